@@ -0,0 +1,123 @@
+package com.retail.retailAPI.benchmarks;
+
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.repositories.PriceConverters;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.core.convert.converter.Converter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads prices the way they are read from the database into the prices cache, with a new
+ * currency code string per document as the driver decodes them, as minor units and a shared
+ * currency against the double value and currency code string prices used to be held as. The
+ * gc profiler reports the bytes allocated per read of every representation. Running the class
+ * prints the footprint of the prices held by each of them, as measured by JOL
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PriceFootprintBenchmark {
+
+    @Param({"1000000"})
+    private int prices;
+
+    private Document[] documents;
+
+    private Converter<Document, Price> reader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reader = new PriceConverters.PriceReader();
+        documents = documents(prices);
+    }
+
+    @Benchmark
+    public Price[] readPrices() {
+        Price[] prices = new Price[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            prices[i] = reader.convert(documents[i]);
+        }
+        return prices;
+    }
+
+    @Benchmark
+    public LegacyPrice[] readLegacyPrices() {
+        LegacyPrice[] prices = new LegacyPrice[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            prices[i] = LegacyPrice.of(documents[i]);
+        }
+        return prices;
+    }
+
+    public static void main(String[] args) {
+        PriceFootprintBenchmark benchmark = new PriceFootprintBenchmark();
+        benchmark.prices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        benchmark.setUp();
+
+        long units = GraphLayout.parseInstance((Object[]) benchmark.readPrices()).totalSize();
+        long legacy = GraphLayout.parseInstance((Object[]) benchmark.readLegacyPrices()).totalSize();
+        System.out.printf("%d prices retain %d bytes as minor units, %.1f bytes per price%n",
+                benchmark.prices, units, (double) units / benchmark.prices);
+        System.out.printf("%d prices retain %d bytes as double and string, %.1f bytes per price%n",
+                benchmark.prices, legacy, (double) legacy / benchmark.prices);
+    }
+
+    private static Document[] documents(int count) {
+        Document[] documents = new Document[count];
+        for (int i = 0; i < count; i++) {
+            documents[i] = new Document("value", 1 + i % 10000 / 100.0)
+                    .append("currency_code", new String("USD"))
+                    .append("version", 1L);
+        }
+        return documents;
+    }
+
+    /**
+     * Price as it was held before minor units, the double value and the currency code string
+     * decoded with the document
+     */
+    public static class LegacyPrice {
+
+        private final double value;
+
+        private final String currencyCode;
+
+        private final long version;
+
+        LegacyPrice(double value, String currencyCode, long version) {
+            this.value = value;
+            this.currencyCode = currencyCode;
+            this.version = version;
+        }
+
+        static LegacyPrice of(Document document) {
+            Number value = (Number) document.get("value");
+            Number version = (Number) document.get("version");
+            return new LegacyPrice(value == null ? 0 : value.doubleValue(), document.getString("currency_code"),
+                    version == null ? 0 : version.longValue());
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public String getCurrencyCode() {
+            return currencyCode;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.retail.retailAPI.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialisation of the product responses and update bodies, with an ObjectMapper
+ * configured the way Spring MVC configures the one behind the controllers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private Product product;
+
+    private byte[] productJson;
+
+    private byte[] priceJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        product = new Product(13860428, "The Big Lebowski (Blu-ray)", new Price(13.49, "USD"));
+        productJson = objectMapper.writeValueAsBytes(product);
+        priceJson = objectMapper.writeValueAsBytes(product.getPrice());
+    }
+
+    @Benchmark
+    public byte[] writeProduct() throws IOException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public Product readProduct() throws IOException {
+        return objectMapper.readValue(productJson, Product.class);
+    }
+
+    @Benchmark
+    public byte[] writePrice() throws IOException {
+        return objectMapper.writeValueAsBytes(product.getPrice());
+    }
+
+    @Benchmark
+    public Price readPrice() throws IOException {
+        return objectMapper.readValue(priceJson, Price.class);
+    }
+}
@@ -0,0 +1,158 @@
+package com.retail.retailAPI.benchmarks;
+
+import com.retail.retailAPI.RetailApiApplication;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductLookup;
+import com.retail.retailAPI.repositories.PriceRepository;
+import com.retail.retailAPI.services.ProductService;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full product read and update paths, through the service, the caches, an embedded Mongo
+ * and a local HTTP server standing in for redsky. The cached lookup measures the cache hit path,
+ * the misses evict the price, or the price and the name, before each lookup. The missing lookups
+ * ask for products that are not stored, as bots probing for ids do
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductServiceBenchmark {
+
+    private static final int PRODUCTS = 1000;
+
+    private static final int FIRST_ID = 13860000;
+
+    /* Offset of ids that are never stored */
+    private static final int MISSING_ID = 50000000;
+
+    private HttpServer redsky;
+
+    private ConfigurableApplicationContext context;
+
+    private ProductService productService;
+
+    private ProductCaches productCaches;
+
+    private Cache names;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] response;
+        try (InputStream in = getClass().getResourceAsStream("/redsky-product.json")) {
+            response = in.readAllBytes();
+        }
+
+        /* Serves the same product response for every id */
+        redsky = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        redsky.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(response);
+            }
+        });
+        redsky.start();
+
+        /* Port 0 starts the embedded Mongo on a free port */
+        context = new SpringApplicationBuilder(RetailApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.port=0",
+                        "endpoint=http://localhost:" + redsky.getAddress().getPort() + "/v2/pdp/tcin/{id}")
+                .run();
+
+        productService = context.getBean(ProductService.class);
+        productCaches = context.getBean(ProductCaches.class);
+        names = context.getBean(CacheManager.class).getCache(ProductCaches.NAMES);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Product(FIRST_ID + i, null, new Price(13.49, "USD")));
+        }
+        context.getBean(PriceRepository.class).saveAll(products);
+
+        /* Warm both caches for the cached lookup */
+        for (int i = 0; i < PRODUCTS; i++) {
+            productService.getProduct(FIRST_ID + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        redsky.stop(0);
+    }
+
+    private int nextId() {
+        next = (next + 1) % PRODUCTS;
+        return FIRST_ID + next;
+    }
+
+    @Benchmark
+    public Optional<Product> cachedLookup() {
+        return productService.getProduct(nextId());
+    }
+
+    @Benchmark
+    public Optional<Product> priceMiss() {
+        int id = nextId();
+        productCaches.evictPrice(id);
+        return productService.getProduct(id);
+    }
+
+    @Benchmark
+    public Optional<Product> uncachedLookup() {
+        int id = nextId();
+        productCaches.evictPrice(id);
+        names.evict(id);
+        return productService.getProduct(id);
+    }
+
+    @Benchmark
+    public ProductLookup missingLookup() {
+        return productService.lookupProduct(MISSING_ID + nextId());
+    }
+
+    /* The not found lookup through the throwing API, compare gc.alloc.rate.norm with missingLookup */
+    @Benchmark
+    public Object missingGetProduct() {
+        try {
+            return productService.getProduct(MISSING_ID + nextId());
+        } catch (ProductNotFoundException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Optional<Product> updateProduct() {
+        int id = nextId();
+        return productService.updateProduct(id, new Product(id, null, new Price(12.99, "USD")));
+    }
+}
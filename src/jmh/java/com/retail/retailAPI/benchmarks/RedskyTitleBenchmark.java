@@ -0,0 +1,53 @@
+package com.retail.retailAPI.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.retailAPI.services.RedskyResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the title out of a full redsky product response, the way the name lookup
+ * used to (body copied to a String and read into a tree by a new ObjectMapper) against the
+ * streaming parser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RedskyTitleBenchmark {
+
+    private byte[] response;
+
+    private RedskyResponseParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/redsky-product.json")) {
+            response = in.readAllBytes();
+        }
+        parser = new RedskyResponseParser();
+    }
+
+    @Benchmark
+    public String readTree() throws IOException {
+        String body = new String(response, StandardCharsets.UTF_8);
+        JsonNode node = new ObjectMapper().readTree(body);
+        return node.path("product").path("item").path("product_description").path("title").asText();
+    }
+
+    @Benchmark
+    public String streamTitle() throws IOException {
+        return parser.getName(new ByteArrayInputStream(response));
+    }
+}
@@ -0,0 +1,100 @@
+package com.retail.retailAPI.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configures the caches of the application. Every cache has a bounded, expiring Caffeine tier with
+ * hit/miss/eviction stats published to the meter registry and, when cache.shared.enabled is set,
+ * a Redis tier shared by all the nodes so that a restarted node does not start cold
+ */
+@Configuration
+public class CacheConfig {
+
+    @Value("${cache.prices.spec}")
+    private String pricesSpec;
+
+    @Value("${cache.prices.shared-ttl}")
+    private Duration pricesSharedTtl;
+
+    @Value("${cache.names.spec}")
+    private String namesSpec;
+
+    @Value("${cache.names.shared-ttl}")
+    private Duration namesSharedTtl;
+
+    @Value("${cache.missing.spec}")
+    private String missingSpec;
+
+    @Value("${cache.payloads.spec}")
+    private String payloadsSpec;
+
+    @Value("${cache.shared.enabled}")
+    private boolean sharedEnabled;
+
+    @Bean
+    public CacheManager cacheManager(MeterRegistry meterRegistry,
+                                     ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+
+        /* Local policy and shared TTL of every cache */
+        Map<String, String> specs = new LinkedHashMap<>();
+        specs.put(ProductCaches.PRICES, pricesSpec);
+        specs.put(ProductCaches.NAMES, namesSpec);
+
+        Map<String, RedisCacheConfiguration> sharedConfigurations = new LinkedHashMap<>();
+        sharedConfigurations.put(ProductCaches.PRICES, RedisCacheConfiguration.defaultCacheConfig().entryTtl(pricesSharedTtl));
+        sharedConfigurations.put(ProductCaches.NAMES, RedisCacheConfiguration.defaultCacheConfig().entryTtl(namesSharedTtl));
+
+        RedisCacheManager sharedCacheManager = null;
+        if (sharedEnabled) {
+            sharedCacheManager = RedisCacheManager.builder(redisConnectionFactory.getObject())
+                    .withInitialCacheConfigurations(sharedConfigurations)
+                    .build();
+            sharedCacheManager.afterPropertiesSet();
+        }
+
+        List<Cache> caches = new ArrayList<>();
+        for (Map.Entry<String, String> spec : specs.entrySet()) {
+            String name = spec.getKey();
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.from(spec.getValue()).build();
+            CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+
+            Cache shared = sharedCacheManager == null ? null : sharedCacheManager.getCache(name);
+            caches.add(new TwoTierCache(new CaffeineCache(name, local), shared));
+        }
+
+        /* Missing products are only remembered locally and briefly, a product created on another node shows up within the TTL.
+         * Serialized products are derived from the other caches and evicted with them, so they are local too */
+        Map<String, String> localSpecs = new LinkedHashMap<>();
+        localSpecs.put(ProductCaches.MISSING, missingSpec);
+        localSpecs.put(ProductCaches.PAYLOADS, payloadsSpec);
+
+        for (Map.Entry<String, String> spec : localSpecs.entrySet()) {
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.from(spec.getValue()).build();
+            CaffeineCacheMetrics.monitor(meterRegistry, local, spec.getKey());
+            caches.add(new TwoTierCache(new CaffeineCache(spec.getKey(), local), null));
+        }
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+}
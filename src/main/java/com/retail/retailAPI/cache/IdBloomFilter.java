@@ -0,0 +1,66 @@
+package com.retail.retailAPI.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of int ids. It may answer that an id was added when it was not, at about the
+ * false positive rate it was sized for, but never that an added id was not. Ids can be added
+ * concurrently with lookups
+ */
+class IdBloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    private final int hashes;
+
+    /**
+     * @param expectedIds       - number of ids the filter is sized for
+     * @param falsePositiveRate - rate of false positives once the expected ids are added
+     */
+    IdBloomFilter(long expectedIds, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-Math.max(expectedIds, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Math.max((optimalBits + 63) / 64, 1), Integer.MAX_VALUE - 8);
+        words = new AtomicLongArray(wordCount);
+        bits = wordCount * 64L;
+        hashes = Math.max(1, (int) Math.round((double) bits / Math.max(expectedIds, 1) * Math.log(2)));
+    }
+
+    void add(int id) {
+        long hash = mix(id);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bits);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((words.get(word) & mask) == 0) {
+                words.accumulateAndGet(word, mask, (current, set) -> current | set);
+            }
+        }
+    }
+
+    boolean mightContain(int id) {
+        long hash = mix(id);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Final mix of murmur3, spreads sequential ids over the whole filter */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
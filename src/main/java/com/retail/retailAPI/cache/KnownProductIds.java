@@ -0,0 +1,138 @@
+package com.retail.retailAPI.cache;
+
+import com.mongodb.client.MongoCursor;
+import com.retail.retailAPI.models.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bloom filter of the ids in the products collection, so lookups of ids that were never stored are
+ * answered without any I/O. It is built in the background at startup and rebuilt periodically to
+ * pick up products written straight into the database; ids imported or seen on the change stream are
+ * added as they are written. Until the first build completes every id is let through. Only runs when
+ * cache.known-ids.enabled is set
+ */
+@Component
+@ConditionalOnProperty(name = "cache.known-ids.enabled", havingValue = "true")
+public class KnownProductIds {
+
+    private static Logger logger = LoggerFactory.getLogger(KnownProductIds.class);
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${cache.known-ids.expected-size}")
+    private long expectedSize;
+
+    @Value("${cache.known-ids.false-positive-rate}")
+    private double falsePositiveRate;
+
+    @Value("${cache.known-ids.rebuild-interval}")
+    private Duration rebuildInterval;
+
+    /* Null until the first build completes */
+    private volatile IdBloomFilter filter;
+
+    /* Filter being built, ids added meanwhile go to both filters */
+    private volatile IdBloomFilter building;
+
+    private Counter rejected;
+
+    private ScheduledExecutorService builder;
+
+    @PostConstruct
+    public void init() {
+        rejected = meterRegistry.counter("cache.known-ids.rejected");
+        builder = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("known-ids-"));
+        builder.scheduleWithFixedDelay(this::build, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * @param id ProductId
+     * @return false only if the product was certainly never stored
+     */
+    public boolean mightContain(int id) {
+        IdBloomFilter current = filter;
+        if (current == null || current.mightContain(id)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void add(int id) {
+
+        /* Read before the current filter, a build swaps in its filter before it stops building */
+        IdBloomFilter next = building;
+        if (next != null) {
+            next.add(id);
+        }
+        IdBloomFilter current = filter;
+        if (current != null) {
+            current.add(id);
+        }
+    }
+
+    public void addAll(Collection<Integer> ids) {
+        ids.forEach(this::add);
+    }
+
+    /**
+     * Reads every id of the products collection into a new filter and swaps it in
+     */
+    void build() {
+        long started = System.currentTimeMillis();
+        try {
+            String collection = mongoTemplate.getCollectionName(Product.class);
+            long count = mongoTemplate.getCollection(collection).estimatedDocumentCount();
+
+            /* Leave room for products added until the next rebuild */
+            IdBloomFilter next = new IdBloomFilter(Math.max(expectedSize, count * 2), falsePositiveRate);
+            building = next;
+
+            long added = 0;
+            try (MongoCursor<Document> ids = mongoTemplate.getCollection(collection).find()
+                    .projection(new Document("_id", 1)).batchSize(10000).iterator()) {
+                while (ids.hasNext()) {
+                    Object id = ids.next().get("_id");
+                    if (id instanceof Integer) {
+                        next.add((Integer) id);
+                        added++;
+                    }
+                }
+            }
+
+            filter = next;
+            building = null;
+            logger.info("Built the known product ids filter with {} ids in {} ms", added, System.currentTimeMillis() - started);
+        } catch (RuntimeException ex) {
+            building = null;
+            logger.error("Unable to build the known product ids filter - {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.retail.retailAPI.cache;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.services.RateLimitedLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the prices cache of this node in line with the products collection by following its change stream,
+ * so prices written on other nodes or straight into the database are not served stale. Cached prices are
+ * refreshed from the changed product and evicted when the product is deleted; products that are not cached
+ * are left alone, and written products are no longer remembered as missing. The resume token is stored
+ * per node so a restarted node carries on where it stopped. A change that cannot be applied is skipped and
+ * its product evicted; when the stream ends, because the collection was dropped or renamed, the prices cache
+ * is cleared and a new stream is opened.
+ * Change streams need a replica set, the listener only runs when cache.change-stream.enabled is set
+ */
+@Component
+@ConditionalOnProperty(name = "cache.change-stream.enabled", havingValue = "true")
+public class PriceChangeListener implements SmartLifecycle {
+
+    private static Logger logger = LoggerFactory.getLogger(PriceChangeListener.class);
+
+    /* Collection holding the resume token of every node */
+    private static final String RESUME_TOKENS = "cache_resume_tokens";
+
+    /* Errors telling the resume token is no longer in the oplog */
+    private static final List<Integer> HISTORY_LOST = Arrays.asList(280, 286);
+
+    /* Changes after which the stream is closed by the server and cannot be resumed */
+    private static final Set<OperationType> ENDS_STREAM = EnumSet.of(OperationType.DROP, OperationType.RENAME,
+            OperationType.DROP_DATABASE, OperationType.INVALIDATE);
+
+    private static RateLimitedLog skippedLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /* Only present when cache.known-ids.enabled is set */
+    @Autowired(required = false)
+    KnownProductIds knownProductIds;
+
+    @Value("${cache.change-stream.node-id}")
+    private String nodeId;
+
+    @Value("${cache.change-stream.checkpoint-interval}")
+    private Duration checkpointInterval;
+
+    private ExecutorService listener;
+
+    private volatile boolean running;
+
+    /* Time of the database this node has applied every change up to, the lag is measured from it */
+    private final AtomicLong currentAsOf = new AtomicLong(System.currentTimeMillis());
+
+    private BsonDocument resumeToken;
+
+    private long lastCheckpoint;
+
+    @Override
+    public void start() {
+        meterRegistry.gauge("cache.change-stream.lag", Collections.emptyList(), currentAsOf,
+                asOf -> Math.max(0, System.currentTimeMillis() - asOf.get()));
+
+        running = true;
+        listener = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("price-changes-"));
+        listener.execute(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        listener.shutdown();
+        try {
+            listener.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Follows the change stream until the node stops, reopening it from the last resume token after failures
+     */
+    private void listen() {
+        resumeToken = loadResumeToken();
+
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = openChangeStream()) {
+                while (running) {
+                    ChangeStreamDocument<Document> change = changes.tryNext();
+                    if (change != null) {
+                        if (!apply(change)) {
+                            break;
+                        }
+                    } else if (changes.getServerCursor() == null) {
+                        /* The server closed the stream without telling why, changes may have been missed */
+                        restart("closed");
+                        break;
+                    } else {
+                        /* Nothing is pending, every change up to now has been applied */
+                        currentAsOf.set(System.currentTimeMillis());
+                    }
+
+                    /* Checkpoint even when idle, the token moves on with unrelated oplog entries */
+                    if (changes.getResumeToken() != null) {
+                        resumeToken = changes.getResumeToken();
+                    }
+                    checkpoint(false);
+                }
+            } catch (MongoCommandException ex) {
+                if (HISTORY_LOST.contains(ex.getErrorCode())) {
+                    /* Changes were missed, start over from now and drop what may be stale */
+                    restart("resume token no longer available");
+                } else {
+                    logger.error("Price change stream failed - {}", ex.getMessage());
+                    pause();
+                }
+            } catch (MongoException ex) {
+                logger.error("Price change stream failed - {}", ex.getMessage());
+                pause();
+            }
+        }
+
+        checkpoint(true);
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream() {
+        MongoCollection<Document> products = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class));
+        ChangeStreamIterable<Document> changeStream = products.watch(Collections.singletonList(Aggregates.match(
+                Filters.in("operationType", "insert", "update", "replace", "delete",
+                        "drop", "rename", "dropDatabase", "invalidate"))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            changeStream.resumeAfter(resumeToken);
+        }
+        return changeStream.cursor();
+    }
+
+    /**
+     * Applies a change of the products collection. A change that cannot be applied, such as one of a
+     * product with an unexpected id or price, is skipped and its product evicted so the listener keeps going
+     *
+     * @param change - a change of the products collection
+     * @return false if the change ended the stream, which must then be opened again
+     */
+    boolean apply(ChangeStreamDocument<Document> change) {
+        OperationType operation = change.getOperationType();
+        if (ENDS_STREAM.contains(operation)) {
+            restart(operation.getValue());
+            return false;
+        }
+
+        try {
+            refresh(change);
+        } catch (RuntimeException ex) {
+            skippedLog.error("Skipped a change of the products collection - {}", ex.getMessage());
+            meterRegistry.counter("cache.change-stream.skipped").increment();
+            BsonDocument key = change.getDocumentKey();
+            if (key != null && key.isInt32("_id")) {
+                productCaches.evictPrice(key.getInt32("_id").getValue());
+            }
+        }
+
+        BsonTimestamp clusterTime = change.getClusterTime();
+        if (clusterTime != null) {
+            currentAsOf.set(clusterTime.getTime() * 1000L);
+        }
+        return true;
+    }
+
+    /**
+     * Refreshes or evicts the cached price of the changed product
+     *
+     * @param change - a change of the products collection
+     */
+    private void refresh(ChangeStreamDocument<Document> change) {
+        int id = change.getDocumentKey().getInt32("_id").getValue();
+        OperationType operation = change.getOperationType();
+
+        /* Skip updates that do not touch the price, such as stored names */
+        if (operation == OperationType.UPDATE && change.getUpdateDescription() != null
+                && change.getUpdateDescription().getUpdatedFields().keySet().stream().noneMatch(field -> field.startsWith("current_price"))
+                && change.getUpdateDescription().getRemovedFields().stream().noneMatch(field -> field.startsWith("current_price"))) {
+            return;
+        }
+
+        /* A written product is no longer missing */
+        if (operation != OperationType.DELETE) {
+            productCaches.evictMissing(id);
+            if (knownProductIds != null) {
+                knownProductIds.add(id);
+            }
+        }
+
+        if (operation == OperationType.DELETE || change.getFullDocument() == null) {
+            productCaches.evictPrice(id);
+        } else if (productCaches.getPrice(id) != null) {
+            Product product = mongoTemplate.getConverter().read(Product.class, change.getFullDocument());
+            productCaches.putPriceIfNewer(id, product.getPrice());
+        }
+
+        meterRegistry.counter("cache.change-stream.events", "operation", operation.getValue()).increment();
+    }
+
+    /**
+     * Drops every cached price and starts a new stream from now, for when changes may have been missed
+     *
+     * @param reason - why the stream ended
+     */
+    private void restart(String reason) {
+        logger.error("Price change stream of node {} ended ({}), clearing the prices cache", nodeId, reason);
+        productCaches.clearPrices();
+        resumeToken = null;
+    }
+
+    private BsonDocument loadResumeToken() {
+        BsonDocument stored = resumeTokens().find(Filters.eq("_id", nodeId)).first();
+        return stored == null ? null : stored.getDocument("token", null);
+    }
+
+    /**
+     * Stores the resume token of this node, at most once per checkpoint interval unless forced
+     *
+     * @param force - store it whatever the time of the last checkpoint
+     */
+    private void checkpoint(boolean force) {
+        long now = System.currentTimeMillis();
+        if (resumeToken == null || (!force && now - lastCheckpoint < checkpointInterval.toMillis())) {
+            return;
+        }
+
+        try {
+            BsonDocument token = new BsonDocument("_id", new BsonString(nodeId))
+                    .append("token", resumeToken)
+                    .append("updated", new BsonDateTime(now));
+            resumeTokens().replaceOne(Filters.eq("_id", nodeId), token, new ReplaceOptions().upsert(true));
+            lastCheckpoint = now;
+        } catch (MongoException ex) {
+            logger.error("Unable to store the resume token of node {} - {}", nodeId, ex.getMessage());
+        }
+    }
+
+    private MongoCollection<BsonDocument> resumeTokens() {
+        return mongoTemplate.getCollection(RESUME_TOKENS).withDocumentClass(BsonDocument.class);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
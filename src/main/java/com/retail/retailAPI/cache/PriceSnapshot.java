@@ -0,0 +1,174 @@
+package com.retail.retailAPI.cache;
+
+import com.mongodb.client.MongoCursor;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price of every stored product held off the heap in a memory mapped snapshot file, so price reads
+ * never reach the database. The snapshot is loaded in the background by streaming the products
+ * collection and kept current by the same writes and evictions as the prices cache. A snapshot
+ * closed cleanly is served right away on the next start while it is brought up to date in the
+ * background. Until it is loaded, reads fall back to the prices cache. Its prices never expire,
+ * so writes made by other nodes or straight into the database only reach it through the change
+ * stream, which must be enabled along with it. Only runs when cache.snapshot.enabled is set
+ */
+@Component
+@ConditionalOnProperty(name = "cache.snapshot.enabled", havingValue = "true")
+public class PriceSnapshot {
+
+    private static Logger logger = LoggerFactory.getLogger(PriceSnapshot.class);
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${cache.change-stream.enabled}")
+    private boolean changeStreamEnabled;
+
+    @Value("${cache.snapshot.file}")
+    private String file;
+
+    @Value("${cache.snapshot.capacity}")
+    private int capacity;
+
+    @Value("${cache.snapshot.stripes}")
+    private int stripes;
+
+    private PriceSnapshotStore store;
+
+    /* Set once every stored price has been loaded */
+    private volatile boolean ready;
+
+    private volatile boolean loading;
+
+    /* Ids removed while loading, the load must not put back what it read before the removal */
+    private final Set<Integer> removedWhileLoading = ConcurrentHashMap.newKeySet();
+
+    private Counter full;
+
+    private ExecutorService loader;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!changeStreamEnabled) {
+            throw new IllegalStateException("cache.snapshot.enabled needs cache.change-stream.enabled, "
+                    + "otherwise prices changed outside of this node are served stale forever");
+        }
+
+        store = new PriceSnapshotStore(Paths.get(file), capacity, stripes);
+        ready = store.isComplete();
+        full = meterRegistry.counter("cache.snapshot.full");
+        meterRegistry.gauge("cache.snapshot.size", store, snapshot -> snapshot.size());
+
+        loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("price-snapshot-"));
+        loader.execute(this::load);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        loader.shutdownNow();
+        loader.awaitTermination(5, TimeUnit.SECONDS);
+
+        /* Only a snapshot that held every price may be served by the next start */
+        if (ready) {
+            store.markComplete();
+        }
+        store.close();
+    }
+
+    /**
+     * @param id ProductId
+     * @return the price or null when the snapshot is not loaded yet or does not hold the product
+     */
+    public Price get(int id) {
+        return ready ? store.get(id) : null;
+    }
+
+    /**
+     * Stores the price of a product unless a later version of it is held
+     *
+     * @param id    ProductId
+     * @param price - the price, a product without one is removed
+     */
+    public void put(int id, Price price) {
+        if (price == null) {
+            remove(id);
+        } else if (!store.put(id, price)) {
+            full.increment();
+        }
+    }
+
+    public void remove(int id) {
+        if (loading) {
+            removedWhileLoading.add(id);
+        }
+        store.remove(id);
+    }
+
+    /**
+     * Drops every price and loads them again, for when changes may have been missed
+     */
+    public void reload() {
+        ready = false;
+        store.clear();
+        loader.execute(this::load);
+    }
+
+    /**
+     * Streams the price of every product of the collection into the snapshot
+     */
+    void load() {
+        long started = System.currentTimeMillis();
+        loading = true;
+        try {
+            long loaded = 0;
+            try (MongoCursor<Document> products = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                    .find().projection(new Document("current_price", 1)).batchSize(10000).iterator()) {
+                while (products.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    Product product = mongoTemplate.getConverter().read(Product.class, products.next());
+                    put(product.getId(), product.getPrice());
+
+                    /* Put first and check after, a removal meanwhile is either seen here or applied after the put */
+                    if (removedWhileLoading.contains(product.getId())) {
+                        store.remove(product.getId());
+                    }
+                    loaded++;
+                }
+            }
+
+            if (!Thread.currentThread().isInterrupted()) {
+                ready = true;
+                logger.info("Loaded {} prices into the snapshot in {} ms", loaded, System.currentTimeMillis() - started);
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Unable to load the price snapshot - {}", ex.getMessage());
+        } finally {
+            loading = false;
+            removedWhileLoading.clear();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.retail.retailAPI.cache;
+
+import com.retail.retailAPI.models.Price;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Currency;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Prices keyed by the int product id in a memory mapped file, so millions of prices are held
+ * outside of the heap and survive a restart. The file is split in stripes, each an open
+ * addressing table of packed price records with linear probing, guarded by its own lock.
+ * Reads are optimistic and only lock when they raced with a write. Removed records leave a
+ * marker to keep probe chains intact, a stripe is rewritten without them once they pile up
+ */
+class PriceSnapshotStore implements Closeable {
+
+    private static final long MAGIC = 0x52455441494C5031L;
+
+    private static final int FORMAT = 1;
+
+    private static final int HEADER_SIZE = 4096;
+
+    /* id, currency numeric code, minor units, version */
+    private static final int RECORD_SIZE = 24;
+
+    private static final int EMPTY = 0;
+
+    private static final int REMOVED = -1;
+
+    /* The file holds every price and was closed cleanly */
+    private static final int STATE_COMPLETE = 1;
+
+    private static final int STATE_OPEN = 0;
+
+    /* Stripes are never filled above this, so probing always finds an empty slot quickly */
+    private static final double MAX_LOAD = 0.75;
+
+    private static final Currency[] CURRENCIES = new Currency[1000];
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int code = currency.getNumericCode();
+            if (code > 0 && code < CURRENCIES.length) {
+                CURRENCIES[code] = currency;
+            }
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    private final int slotsPerStripe;
+
+    private final boolean complete;
+
+    /**
+     * Opens the snapshot file, creating it when it does not exist or was written with another layout
+     *
+     * @param file     - the snapshot file
+     * @param capacity - number of prices the file is sized for
+     * @param stripes  - number of stripes, rounded up to a power of two
+     */
+    PriceSnapshotStore(Path file, int capacity, int stripes) throws IOException {
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        int slots = Integer.highestOneBit(Math.max(2, (int) Math.ceil(capacity / MAX_LOAD / stripeCount) - 1) << 1);
+        long stripeSize = (long) slots * RECORD_SIZE;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        boolean sameLayout = header.getLong(0) == MAGIC && header.getInt(8) == FORMAT
+                && header.getInt(12) == stripeCount && header.getInt(16) == slots;
+        complete = sameLayout && header.getInt(20) == STATE_COMPLETE;
+        if (!sameLayout) {
+            channel.truncate(HEADER_SIZE);
+            header.putLong(0, MAGIC);
+            header.putInt(8, FORMAT);
+            header.putInt(12, stripeCount);
+            header.putInt(16, slots);
+        }
+
+        /* Until it is closed cleanly, the file cannot be trusted by the next run */
+        header.putInt(20, STATE_OPEN);
+        header.force();
+
+        this.stripeMask = stripeCount - 1;
+        this.slotsPerStripe = slots;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * stripeSize, stripeSize);
+            this.stripes[i] = new Stripe(records, complete);
+        }
+    }
+
+    /**
+     * @return whether the file held every price of a previous run that was closed cleanly
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param id ProductId
+     * @return the price or null when it is not held
+     */
+    Price get(int id) {
+        if (id <= 0) {
+            return null;
+        }
+
+        int hash = mix(id);
+        Stripe stripe = stripes[hash & stripeMask];
+        long stamp = stripe.lock.tryOptimisticRead();
+        Price price = stripe.find(id, hash);
+        if (!stripe.lock.validate(stamp)) {
+            stamp = stripe.lock.readLock();
+            try {
+                price = stripe.find(id, hash);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return price;
+    }
+
+    /**
+     * Stores the price unless a later version of it is held
+     *
+     * @param id    ProductId
+     * @param price - the price
+     * @return false if the price could not be stored because its stripe is full
+     */
+    boolean put(int id, Price price) {
+        if (id <= 0) {
+            return true;
+        }
+
+        int hash = mix(id);
+        Stripe stripe = stripes[hash & stripeMask];
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.put(id, hash, price);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(int id) {
+        if (id <= 0) {
+            return;
+        }
+
+        int hash = mix(id);
+        Stripe stripe = stripes[hash & stripeMask];
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.remove(id, hash);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the prices to disk and marks the file as holding every price, for the next run to start from
+     */
+    void markComplete() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.records.force();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        header.putInt(20, STATE_COMPLETE);
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* Final mix of murmur3, the low bits pick the stripe and the high bits the slot */
+    private static int mix(int id) {
+        int hash = id;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+
+        private final MappedByteBuffer records;
+
+        /* Slots in use, written under the write lock */
+        private volatile int size;
+
+        /* Removed slots, they keep probe chains intact until they are reused or the stripe is rehashed */
+        private int removed;
+
+        Stripe(MappedByteBuffer records, boolean keep) {
+            this.records = records;
+            if (!keep) {
+                clear();
+                return;
+            }
+
+            int size = 0;
+            int removed = 0;
+            for (int slot = 0; slot < slotsPerStripe; slot++) {
+                int id = records.getInt(slot * RECORD_SIZE);
+                if (id == REMOVED) {
+                    removed++;
+                } else if (id != EMPTY) {
+                    size++;
+                }
+            }
+            this.size = size;
+            this.removed = removed;
+        }
+
+        void clear() {
+            for (int slot = 0; slot < slotsPerStripe; slot++) {
+                records.putInt(slot * RECORD_SIZE, EMPTY);
+            }
+            size = 0;
+            removed = 0;
+        }
+
+        /* Rewrites the records in use without the removed slots, which lengthen probes and take up room */
+        void rehash() {
+            int count = 0;
+            int[] ids = new int[size];
+            int[] currencies = new int[size];
+            long[] units = new long[size];
+            long[] versions = new long[size];
+            for (int slot = 0; slot < slotsPerStripe; slot++) {
+                int offset = slot * RECORD_SIZE;
+                int id = records.getInt(offset);
+                if (id != EMPTY && id != REMOVED) {
+                    ids[count] = id;
+                    currencies[count] = records.getInt(offset + 4);
+                    units[count] = records.getLong(offset + 8);
+                    versions[count] = records.getLong(offset + 16);
+                    count++;
+                }
+            }
+
+            clear();
+            for (int i = 0; i < count; i++) {
+                int slot = home(mix(ids[i]));
+                while (records.getInt(slot * RECORD_SIZE) != EMPTY) {
+                    slot = (slot + 1) & (slotsPerStripe - 1);
+                }
+                write(slot * RECORD_SIZE, ids[i], currencies[i], units[i], versions[i]);
+            }
+            size = count;
+        }
+
+        private int home(int hash) {
+            return (hash >>> 8) & (slotsPerStripe - 1);
+        }
+
+        /* May run concurrently with a write, so it never throws and always ends */
+        Price find(int id, int hash) {
+            int slot = home(hash);
+            for (int probes = 0; probes < slotsPerStripe; probes++) {
+                int offset = slot * RECORD_SIZE;
+                int stored = records.getInt(offset);
+                if (stored == id) {
+                    int currency = records.getInt(offset + 4);
+                    return new Price(records.getLong(offset + 8),
+                            currency > 0 && currency < CURRENCIES.length ? CURRENCIES[currency] : null,
+                            records.getLong(offset + 16));
+                }
+                if (stored == EMPTY) {
+                    return null;
+                }
+                slot = (slot + 1) & (slotsPerStripe - 1);
+            }
+            return null;
+        }
+
+        boolean put(int id, int hash, Price price) {
+            int slot = home(hash);
+            int free = -1;
+            for (int probes = 0; probes < slotsPerStripe; probes++) {
+                int offset = slot * RECORD_SIZE;
+                int stored = records.getInt(offset);
+                if (stored == id) {
+                    if (records.getLong(offset + 16) <= price.getVersion()) {
+                        write(offset, id, price);
+                    }
+                    return true;
+                }
+                if (stored == REMOVED && free < 0) {
+                    free = slot;
+                }
+                if (stored == EMPTY) {
+                    if (free >= 0) {
+                        removed--;
+                    } else if (size + removed + 1 > slotsPerStripe * MAX_LOAD) {
+                        /* Only full when every slot is in use, otherwise make room by dropping the removed ones */
+                        if (removed == 0) {
+                            return false;
+                        }
+                        rehash();
+                        return put(id, hash, price);
+                    } else {
+                        free = slot;
+                    }
+                    write(free * RECORD_SIZE, id, price);
+                    size++;
+                    return true;
+                }
+                slot = (slot + 1) & (slotsPerStripe - 1);
+            }
+            if (free >= 0) {
+                write(free * RECORD_SIZE, id, price);
+                removed--;
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        void remove(int id, int hash) {
+            int slot = home(hash);
+            for (int probes = 0; probes < slotsPerStripe; probes++) {
+                int offset = slot * RECORD_SIZE;
+                int stored = records.getInt(offset);
+                if (stored == id) {
+                    records.putInt(offset, REMOVED);
+                    size--;
+                    removed++;
+                    if (removed > slotsPerStripe / 4) {
+                        rehash();
+                    }
+                    return;
+                }
+                if (stored == EMPTY) {
+                    return;
+                }
+                slot = (slot + 1) & (slotsPerStripe - 1);
+            }
+        }
+
+        /* The id goes last, so a record is never found before its price is written */
+        private void write(int offset, int id, Price price) {
+            Currency currency = price.getCurrency();
+            write(offset, id, currency == null ? 0 : currency.getNumericCode(), price.getUnits(), price.getVersion());
+        }
+
+        private void write(int offset, int id, int currency, long units, long version) {
+            records.putInt(offset + 4, currency);
+            records.putLong(offset + 8, units);
+            records.putLong(offset + 16, version);
+            records.putInt(offset, id);
+        }
+    }
+}
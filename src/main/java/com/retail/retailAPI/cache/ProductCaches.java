@@ -0,0 +1,249 @@
+package com.retail.retailAPI.cache;
+
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.ProductLookup;
+import com.retail.retailAPI.models.ProductPayload;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Typed access to the caches that make up a product. Prices come from the local repo and are
+ * written through on every update, names come from redsky and are kept for much longer, so a
+ * price change never causes a redsky call. Products that do not exist are remembered briefly in
+ * a separate cache so repeated lookups of unknown ids do not reach the database or redsky.
+ * Serialized products are cached apart and evicted whenever their price or name changes. When the
+ * price snapshot is enabled, prices are served from it ahead of the prices cache and every write
+ * or eviction of a price goes to both. Prices read from the database never replace a later version
+ * that is already cached
+ */
+@Component
+public class ProductCaches {
+
+    public static final String PRICES = "prices";
+
+    public static final String NAMES = "names";
+
+    public static final String MISSING = "missing";
+
+    public static final String PAYLOADS = "payloads";
+
+    @Autowired
+    CacheManager cacheManager;
+
+    /* Only present when cache.snapshot.enabled is set */
+    @Autowired(required = false)
+    PriceSnapshot priceSnapshot;
+
+    /**
+     * Gets the cached price of a product
+     *
+     * @param id ProductId
+     * @return the cached entry, whose value may be a null price, or null when the product is not cached
+     */
+    public Cache.ValueWrapper getPrice(int id) {
+        if (priceSnapshot != null) {
+            Price price = priceSnapshot.get(id);
+            if (price != null) {
+                return new SimpleValueWrapper(price);
+            }
+        }
+        return cacheManager.getCache(PRICES).get(id);
+    }
+
+    public void putPrice(int id, Price price) {
+        cacheManager.getCache(PRICES).put(id, price);
+        if (priceSnapshot != null) {
+            priceSnapshot.put(id, price);
+        }
+        evictPayload(id);
+    }
+
+    /**
+     * Caches a price read from the database unless a later version of it is cached, so a read that
+     * raced with an update does not put back the price the update replaced
+     *
+     * @param id    ProductId
+     * @param price - the price read, a product without one is cached as such
+     */
+    public void putPriceIfNewer(int id, Price price) {
+        boolean[] written = {false};
+        localCache(PRICES).asMap().compute(id, (key, cached) -> {
+            if (price != null && cached instanceof Price && ((Price) cached).getVersion() > price.getVersion()) {
+                return cached;
+            }
+            written[0] = true;
+            return price == null ? NullValue.INSTANCE : price;
+        });
+        if (!written[0]) {
+            return;
+        }
+
+        Cache cache = cacheManager.getCache(PRICES);
+        if (cache instanceof TwoTierCache) {
+            ((TwoTierCache) cache).putShared(id, price);
+        }
+        if (priceSnapshot != null) {
+            priceSnapshot.put(id, price);
+        }
+        evictPayload(id);
+    }
+
+    public void evictPrice(int id) {
+        cacheManager.getCache(PRICES).evict(id);
+        if (priceSnapshot != null) {
+            priceSnapshot.remove(id);
+        }
+        evictPayload(id);
+    }
+
+    public void evictPrices(Collection<Integer> ids) {
+        Cache cache = cacheManager.getCache(PRICES);
+        Cache payloads = cacheManager.getCache(PAYLOADS);
+        for (Integer id : ids) {
+            cache.evict(id);
+            payloads.evict(id);
+            if (priceSnapshot != null) {
+                priceSnapshot.remove(id);
+            }
+        }
+    }
+
+    public void clearPrices() {
+        cacheManager.getCache(PRICES).clear();
+        cacheManager.getCache(PAYLOADS).clear();
+        if (priceSnapshot != null) {
+            priceSnapshot.reload();
+        }
+    }
+
+    /**
+     * Gets the cached name of a product
+     *
+     * @param id ProductId
+     * @return the cached name or null when it is not cached
+     */
+    public String getName(int id) {
+        return cacheManager.getCache(NAMES).get(id, String.class);
+    }
+
+    public void putName(int id, String name) {
+        cacheManager.getCache(NAMES).put(id, name);
+        evictPayload(id);
+    }
+
+    /**
+     * Gets the cached serialized product. It is evicted whenever the price or the name of the
+     * product is written or evicted
+     *
+     * @param id ProductId
+     * @return the serialized product or null when it is not cached
+     */
+    public ProductPayload getPayload(int id) {
+        return cacheManager.getCache(PAYLOADS).get(id, ProductPayload.class);
+    }
+
+    public void putPayload(int id, ProductPayload payload) {
+        cacheManager.getCache(PAYLOADS).put(id, payload);
+    }
+
+    public void evictPayload(int id) {
+        cacheManager.getCache(PAYLOADS).evict(id);
+    }
+
+    /**
+     * Gets the cached outcome of a product that was recently found not to exist
+     *
+     * @param id ProductId
+     * @return the not found lookup or null when the product is not known to be missing
+     */
+    public ProductLookup getMissing(int id) {
+        return cacheManager.getCache(MISSING).get(id, ProductLookup.class);
+    }
+
+    public void putMissing(ProductLookup lookup) {
+        cacheManager.getCache(MISSING).put(lookup.getId(), lookup);
+    }
+
+    public void evictMissing(int id) {
+        cacheManager.getCache(MISSING).evict(id);
+    }
+
+    public void evictMissing(Collection<Integer> ids) {
+        Cache cache = cacheManager.getCache(MISSING);
+        ids.forEach(cache::evict);
+    }
+
+    /**
+     * Gets the ids of the products read most often from a cache, as estimated by the
+     * frequency sketch of its local tier
+     *
+     * @param name  - name of the cache
+     * @param limit - maximum number of ids
+     * @return the ids, hottest first
+     */
+    public List<Integer> hottest(String name, int limit) {
+        return localCache(name).policy().eviction()
+                .map(eviction -> eviction.hottest(limit).keySet().stream()
+                        .map(Integer.class::cast)
+                        .collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * Gets the ids of the products looked up most often. Prices answered by the snapshot are never
+     * read from the prices cache, which leaves its frequency sketch empty, so the names cache, read
+     * on every lookup, is used instead while the snapshot is enabled
+     *
+     * @param limit - maximum number of ids
+     * @return the ids, hottest first
+     */
+    public List<Integer> hottestProducts(int limit) {
+        return hottest(priceSnapshot != null ? NAMES : PRICES, limit);
+    }
+
+    /**
+     * Tells whether prices are served from the snapshot, whose prices never expire
+     *
+     * @return true when cache.snapshot.enabled is set
+     */
+    public boolean isPriceSnapshotEnabled() {
+        return priceSnapshot != null;
+    }
+
+    /**
+     * Gets how much of its time to live a locally cached entry has used
+     *
+     * @param name - name of the cache
+     * @param id   - ProductId
+     * @return the age of the entry as a fraction of its time to live, 0 when it does not expire
+     * or is not cached
+     */
+    public double ageRatio(String name, int id) {
+        return localCache(name).policy().expireAfterWrite()
+                .map(expiration -> {
+                    long ttl = expiration.getExpiresAfter(TimeUnit.MILLISECONDS);
+                    long age = expiration.ageOf(id, TimeUnit.MILLISECONDS).orElse(0);
+                    return ttl == 0 ? 0 : (double) age / ttl;
+                })
+                .orElse(0d);
+    }
+
+    @SuppressWarnings("unchecked")
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache instanceof TwoTierCache) {
+            cache = ((TwoTierCache) cache).getLocal();
+        }
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+}
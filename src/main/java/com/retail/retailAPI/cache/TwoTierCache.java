@@ -0,0 +1,143 @@
+package com.retail.retailAPI.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cache with a bounded in-process tier in front of an optional shared tier. Reads go to the local
+ * tier first and fall back to the shared tier, promoting what they find. Writes and evictions go to
+ * both tiers. The shared tier is best effort, so when it is unavailable the cache keeps working locally
+ */
+public class TwoTierCache implements Cache {
+
+    private static Logger logger = LoggerFactory.getLogger(TwoTierCache.class);
+
+    private final Cache local;
+
+    private final Cache shared;
+
+    /**
+     * @param local  - in-process tier
+     * @param shared - shared tier, or null to only cache locally
+     */
+    public TwoTierCache(Cache local, Cache shared) {
+        this.local = local;
+        this.shared = shared;
+    }
+
+    public Cache getLocal() {
+        return local;
+    }
+
+    @Override
+    public String getName() {
+        return local.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = local.get(key);
+        if (value == null) {
+            value = getShared(key);
+            if (value != null) {
+                local.put(key, value.get());
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object stored = value == null ? null : value.get();
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return local.get(key, () -> {
+            ValueWrapper value = getShared(key);
+            if (value != null) {
+                return (T) value.get();
+            }
+            T loaded = valueLoader.call();
+            putShared(key, loaded);
+            return loaded;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        local.put(key, value);
+        putShared(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = local.putIfAbsent(key, value);
+        if (existing == null) {
+            putShared(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.evict(key);
+        if (shared != null) {
+            try {
+                shared.evict(key);
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to evict {} from shared cache {} - {}", key, getName(), ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        if (shared != null) {
+            try {
+                shared.clear();
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to clear shared cache {} - {}", getName(), ex.getMessage());
+            }
+        }
+    }
+
+    private ValueWrapper getShared(Object key) {
+        if (shared == null) {
+            return null;
+        }
+        try {
+            return shared.get(key);
+        } catch (RuntimeException ex) {
+            logger.warn("Unable to read {} from shared cache {} - {}", key, getName(), ex.getMessage());
+            return null;
+        }
+    }
+
+    void putShared(Object key, Object value) {
+        if (shared == null) {
+            return;
+        }
+        try {
+            shared.put(key, value);
+        } catch (RuntimeException ex) {
+            logger.warn("Unable to write {} to shared cache {} - {}", key, getName(), ex.getMessage());
+        }
+    }
+}
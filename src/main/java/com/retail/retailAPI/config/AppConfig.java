@@ -3,6 +3,8 @@ package com.retail.retailAPI.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class AppConfig {
 
@@ -11,4 +13,58 @@ public class AppConfig {
     public String getRestURL() {
         return restURL;
     }
+
+    @Value("${redsky.concurrency}")
+    private int redskyConcurrency;
+    public int getRedskyConcurrency() {
+        return redskyConcurrency;
+    }
+
+    @Value("${product.lookup.concurrent}")
+    private boolean concurrentLookup;
+    public boolean isConcurrentLookup() {
+        return concurrentLookup;
+    }
+
+    @Value("${batch.max-size}")
+    private int batchMaxSize;
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    @Value("${batch.update-size}")
+    private int batchUpdateSize;
+    public int getBatchUpdateSize() {
+        return batchUpdateSize;
+    }
+
+    @Value("${product.cache-control.max-age}")
+    private Duration cacheMaxAge;
+    public Duration getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    @Value("${product.cache-control.stale-while-revalidate}")
+    private Duration cacheStaleWhileRevalidate;
+    public Duration getCacheStaleWhileRevalidate() {
+        return cacheStaleWhileRevalidate;
+    }
+
+    @Value("${product.cache-control.stale-if-error}")
+    private Duration cacheStaleIfError;
+    public Duration getCacheStaleIfError() {
+        return cacheStaleIfError;
+    }
+
+    @Value("${product.payload-cache.enabled}")
+    private boolean payloadCache;
+    public boolean isPayloadCache() {
+        return payloadCache;
+    }
+
+    @Value("${product.payload-cache.gzip}")
+    private boolean payloadGzip;
+    public boolean isPayloadGzip() {
+        return payloadGzip;
+    }
 }
@@ -0,0 +1,92 @@
+package com.retail.retailAPI.config;
+
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.retail.retailAPI.repositories.PriceConverters;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the MongoDB clients. The latency of every command sent by the blocking and the
+ * reactive client is published to the meter registry as mongodb.driver.commands, and the size and
+ * wait queue of their connection pools as mongodb.driver.pool.*. Prices are mapped by
+ * {@link PriceConverters}
+ */
+@Configuration
+public class MongoConfig {
+
+    @Value("${mongodb.read-preference}")
+    private String readPreference;
+
+    @Value("${mongodb.max-staleness}")
+    private Duration maxStaleness;
+
+    @Value("${mongodb.pool.min-size}")
+    private int poolMinSize;
+
+    @Value("${mongodb.pool.max-size}")
+    private int poolMaxSize;
+
+    @Value("${mongodb.pool.max-wait-time}")
+    private Duration poolMaxWaitTime;
+
+    @Value("${mongodb.pool.max-wait-queue-size}")
+    private int poolMaxWaitQueueSize;
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(PriceConverters.converters());
+    }
+
+    /**
+     * Read preference of the product reads of the GET path. Every other read and all writes go to the primary
+     *
+     * @return the read preference, bounded by the max staleness unless it is the primary
+     */
+    @Bean
+    public ReadPreference productReadPreference() {
+        ReadPreference preference = ReadPreference.valueOf(readPreference);
+
+        /* The primary is never stale, a staleness bound is only allowed for the other modes */
+        if (preference.equals(ReadPreference.primary()) || maxStaleness.isZero()) {
+            return preference;
+        }
+        return ReadPreference.valueOf(readPreference, Collections.emptyList(), maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Bean
+    public MongoClientOptions mongoClientOptions(MeterRegistry meterRegistry) {
+        return MongoClientOptions.builder()
+                .minConnectionsPerHost(poolMinSize)
+                .connectionsPerHost(poolMaxSize)
+                .maxWaitTime((int) poolMaxWaitTime.toMillis())
+
+                /* The blocking client sizes its wait queue as a multiple of the pool size */
+                .threadsAllowedToBlockForConnectionMultiplier(Math.max(1, poolMaxWaitQueueSize / Math.max(1, poolMaxSize)))
+                .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+                .addConnectionPoolListener(new MongoMetricsConnectionPoolListener(meterRegistry))
+                .build();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry meterRegistry) {
+        return builder -> builder
+                .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(poolMinSize)
+                        .maxSize(poolMaxSize)
+                        .maxWaitTime(poolMaxWaitTime.toMillis(), TimeUnit.MILLISECONDS)
+                        .maxWaitQueueSize(poolMaxWaitQueueSize)
+                        .addConnectionPoolListener(new MongoMetricsConnectionPoolListener(meterRegistry)));
+    }
+}
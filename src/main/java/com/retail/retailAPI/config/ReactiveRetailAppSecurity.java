@@ -0,0 +1,42 @@
+package com.retail.retailAPI.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * Reactive counterpart of {@link RetailAppSecurity}, active when the application runs on the reactive web stack
+ */
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRetailAppSecurity {
+
+    @Bean
+    public MapReactiveUserDetailsService userDetailsService() {
+        return new MapReactiveUserDetailsService(User.withUsername("admin")
+                .password("{noop}password")
+                .roles("ADMIN")
+                .build());
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http.httpBasic().and()
+                .authorizeExchange()
+                .pathMatchers(HttpMethod.PUT)
+                .hasRole("ADMIN")
+                .anyExchange()
+                .permitAll()
+                .and()
+                .csrf().disable()
+                .formLogin().and()
+                .build();
+    }
+}
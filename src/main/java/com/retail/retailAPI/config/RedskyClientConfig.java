@@ -0,0 +1,227 @@
+package com.retail.retailAPI.config;
+
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.web.client.RestTemplateExchangeTags;
+import org.springframework.boot.actuate.metrics.web.client.RestTemplateExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTags;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Configures the HTTP clients used to call redsky. Connections are pooled and kept alive so that
+ * TCP and TLS handshakes are reused, and every call is bounded by connect, read and pool acquire
+ * timeouts. Pool utilisation and acquire wait times are published to the meter registry.
+ * Calls are also guarded by a circuit breaker and a bulkhead, whose state is published as well
+ */
+@Configuration
+public class RedskyClientConfig {
+
+    @Value("${endpoint}")
+    private String endpoint;
+
+    @Value("${redsky.pool.max-total}")
+    private int maxTotal;
+
+    @Value("${redsky.pool.max-per-route}")
+    private int maxPerRoute;
+
+    @Value("${redsky.pool.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${redsky.timeout.connect}")
+    private Duration connectTimeout;
+
+    @Value("${redsky.timeout.read}")
+    private Duration readTimeout;
+
+    @Value("${redsky.timeout.pool-acquire}")
+    private Duration poolAcquireTimeout;
+
+    @Value("${redsky.http2}")
+    private boolean http2;
+
+    @Value("${redsky.circuit-breaker.failure-rate-threshold}")
+    private float failureRateThreshold;
+
+    @Value("${redsky.circuit-breaker.slow-call-duration}")
+    private Duration slowCallDuration;
+
+    @Value("${redsky.circuit-breaker.sliding-window-size}")
+    private int slidingWindowSize;
+
+    @Value("${redsky.circuit-breaker.minimum-calls}")
+    private int minimumCalls;
+
+    @Value("${redsky.circuit-breaker.open-duration}")
+    private Duration openDuration;
+
+    @Value("${redsky.bulkhead.max-concurrent-calls}")
+    private int maxConcurrentCalls;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager redskyConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity((int) keepAlive.toMillis() / 2);
+
+        poolGauge(meterRegistry, connectionManager, "leased", PoolStats::getLeased);
+        poolGauge(meterRegistry, connectionManager, "available", PoolStats::getAvailable);
+        poolGauge(meterRegistry, connectionManager, "pending", PoolStats::getPending);
+        poolGauge(meterRegistry, connectionManager, "max", PoolStats::getMax);
+        return connectionManager;
+    }
+
+    @Bean
+    public ClientHttpRequestFactory redskyRequestFactory(PoolingHttpClientConnectionManager redskyConnectionManager,
+                                                         MeterRegistry meterRegistry) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolAcquireTimeout.toMillis())
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(new InstrumentedConnectionManager(redskyConnectionManager,
+                        meterRegistry.timer("redsky.pool.acquire")))
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    /* Honour a shorter keep alive sent by redsky, otherwise use ours */
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive.toMillis()) : keepAlive.toMillis();
+                })
+                .evictIdleConnections(keepAlive.toMillis(), TimeUnit.MILLISECONDS)
+                .evictExpiredConnections()
+                .build());
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, ClientHttpRequestFactory redskyRequestFactory) {
+        return builder.requestFactory(() -> redskyRequestFactory).build();
+    }
+
+    /**
+     * Tags the http.client.requests metrics of redsky calls with the path template of the endpoint
+     * rather than the expanded path, so every product id does not become a separate series and
+     * the calls can be counted by status code
+     */
+    @Bean
+    public RestTemplateExchangeTagsProvider restTemplateExchangeTagsProvider() {
+        Tag uri = Tag.of("uri", endpointPath());
+        return (urlTemplate, request, response) -> Arrays.asList(
+                RestTemplateExchangeTags.method(request),
+                urlTemplate != null ? RestTemplateExchangeTags.uri(urlTemplate) : uri,
+                RestTemplateExchangeTags.status(response),
+                RestTemplateExchangeTags.clientName(request),
+                RestTemplateExchangeTags.outcome(response));
+    }
+
+    @Bean
+    public WebClientExchangeTagsProvider webClientExchangeTagsProvider() {
+        Tag uri = Tag.of("uri", endpointPath());
+        return (request, response, throwable) -> Arrays.asList(
+                WebClientExchangeTags.method(request),
+                uri,
+                response != null ? WebClientExchangeTags.status(response) : WebClientExchangeTags.status(throwable),
+                WebClientExchangeTags.clientName(request),
+                WebClientExchangeTags.outcome(response));
+    }
+
+    private String endpointPath() {
+        return UriComponentsBuilder.fromHttpUrl(endpoint).build().getPath();
+    }
+
+    /**
+     * WebClient used by the reactive stack, with its own connection pool and the same timeouts.
+     * HTTP/2 can be enabled here since the reactive client supports it
+     */
+    @Bean
+    public WebClient webClient(WebClient.Builder builder) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.fixed("redsky", maxTotal, poolAcquireTimeout.toMillis()))
+                .tcpConfiguration(tcpClient -> tcpClient
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                        .doOnConnected(connection -> connection.addHandlerLast(
+                                new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS))));
+
+        if (http2) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    /**
+     * Opens when too many redsky calls fail or are slow, so further calls fail fast until redsky
+     * recovers. Products that redsky does not know are not failures
+     */
+    @Bean
+    public CircuitBreaker redskyCircuitBreaker(MeterRegistry meterRegistry) {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .ignoreExceptions(ProductNotFoundException.class)
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry.circuitBreaker("redsky");
+    }
+
+    /**
+     * Caps the number of concurrent redsky calls, rejecting calls beyond it instead of queueing them
+     */
+    @Bean
+    public Bulkhead redskyBulkhead(MeterRegistry meterRegistry) {
+        BulkheadRegistry registry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry.bulkhead("redsky");
+    }
+
+    private void poolGauge(MeterRegistry meterRegistry, PoolingHttpClientConnectionManager connectionManager,
+                           String state, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("redsky.pool.connections", connectionManager,
+                manager -> value.applyAsDouble(manager.getTotalStats()))
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+}
@@ -1,36 +1,68 @@
 package com.retail.retailAPI.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 
+import java.time.Duration;
+
+/**
+ * Anyone may read products, only the ADMIN role may update prices and use the catalog. Product
+ * reads skip the security filter chain altogether, the other requests are authenticated with Basic
+ * credentials on every request without a session, and verified credentials are cached briefly so
+ * the password is not hashed on each of them
+ */
 @Configuration
 @EnableWebSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RetailAppSecurity extends WebSecurityConfigurerAdapter {
 
+    @Value("${security.credentials-cache.ttl}")
+    private Duration credentialsCacheTtl;
+
+    @Value("${security.credentials-cache.max-size}")
+    private long credentialsCacheMaxSize;
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
 
-        auth.inMemoryAuthentication()
-                .withUser("admin")
+        DaoAuthenticationProvider users = new DaoAuthenticationProvider();
+        users.setUserDetailsService(new InMemoryUserDetailsManager(User.withUsername("admin")
                 .password("{noop}password")
-                .roles("ADMIN");
+                .roles("ADMIN")
+                .build()));
 
+        auth.authenticationProvider(new CachingAuthenticationProvider(users, credentialsCacheTtl, credentialsCacheMaxSize));
     }
 
+    @Override
+    public void configure(WebSecurity web) {
+        web.ignoring()
+                .antMatchers(HttpMethod.GET, "/api/v1/products/**");
+    }
 
    @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.httpBasic().and()
+                .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
                 .authorizeRequests()
                 .antMatchers(HttpMethod.PUT)
                 .hasRole("ADMIN")
+                .antMatchers("/api/v1/catalog/**")
+                .hasRole("ADMIN")
                 .and()
-                .csrf().disable()
-                .formLogin();
+                .csrf().disable();
     }
 }
-
@@ -0,0 +1,87 @@
+package com.retail.retailAPI.controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limit of the requests in flight that adapts to their latency. The limit grows by one for every
+ * limit of requests served within the latency target while it is in use, and shrinks by a tenth
+ * when requests take longer, at most once per latency target as slow requests come in bunches
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyTarget;
+
+    private final LongSupplier clock;
+
+    private final AtomicInteger limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /* Requests served within the target since the limit last grew */
+    private final AtomicInteger fast = new AtomicInteger();
+
+    private final AtomicLong lastBackoff;
+
+    /**
+     * @param minLimit      - the limit never goes below it
+     * @param maxLimit      - the limit starts at it and never goes above it
+     * @param latencyTarget - latency in nanos above which the limit shrinks
+     * @param clock         - nano time source
+     */
+    AdaptiveConcurrencyLimit(int minLimit, int maxLimit, long latencyTarget, LongSupplier clock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTarget = latencyTarget;
+        this.clock = clock;
+        this.limit = new AtomicInteger(this.maxLimit);
+        this.lastBackoff = new AtomicLong(clock.getAsLong() - latencyTarget);
+    }
+
+    /**
+     * @return true if the request may go ahead, it must then be released
+     */
+    boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit.get()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param latency - nanos the request took
+     */
+    void release(long latency) {
+        int used = inFlight.getAndDecrement();
+        int current = limit.get();
+
+        if (latency > latencyTarget) {
+            long now = clock.getAsLong();
+            long last = lastBackoff.get();
+            if (now - last >= latencyTarget && lastBackoff.compareAndSet(last, now)) {
+                limit.updateAndGet(value -> Math.max(minLimit, (int) (value * BACKOFF)));
+                fast.set(0);
+            }
+        } else if (used * 2 >= current && fast.incrementAndGet() >= current) {
+            /* Only grow a limit that is in use, an idle server says nothing about more load */
+            fast.set(0);
+            limit.updateAndGet(value -> Math.min(maxLimit, value + 1));
+        }
+    }
+
+    int getLimit() {
+        return limit.get();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,228 @@
+package com.retail.retailAPI.controllers;
+
+import com.retail.retailAPI.services.RateLimitedLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control of the product and catalog API. Every client has a token bucket and the
+ * requests in flight have a limit that adapts to their latency, so a misbehaving client is told
+ * to slow down with a 429 and excess load is shed with a 503 before it reaches the database or
+ * redsky. Reads and writes have budgets of their own. Runs ahead of security so rejected requests
+ * cost as little as possible. Only runs when admission.enabled is set
+ * <p>
+ * A client is its API key only when the key is one of admission.api-keys, anything else is limited by
+ * the remote address so made up keys do not get fresh buckets. Every key is also limited per address it
+ * is sent from. Behind a load balancer the remote address is only the client with
+ * server.forward-headers-strategy set, otherwise every request shares the address of the balancer
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static RateLimitedLog rejectedLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static final String API_PATH = "/api/v1/";
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${admission.api-key-header}")
+    private String apiKeyHeader;
+
+    @Value("${admission.api-keys}")
+    private Set<String> apiKeys;
+
+    @Value("${admission.max-clients}")
+    private long maxClients;
+
+    @Value("${admission.latency-target}")
+    private Duration latencyTarget;
+
+    @Value("${admission.read.rate}")
+    private double readRate;
+
+    @Value("${admission.read.burst}")
+    private int readBurst;
+
+    @Value("${admission.read.min-concurrency}")
+    private int readMinConcurrency;
+
+    @Value("${admission.read.max-concurrency}")
+    private int readMaxConcurrency;
+
+    @Value("${admission.write.rate}")
+    private double writeRate;
+
+    @Value("${admission.write.burst}")
+    private int writeBurst;
+
+    @Value("${admission.write.min-concurrency}")
+    private int writeMinConcurrency;
+
+    @Value("${admission.write.max-concurrency}")
+    private int writeMaxConcurrency;
+
+    private Budget reads;
+
+    private Budget writes;
+
+    @PostConstruct
+    public void createBudgets() {
+        reads = new Budget("read", readRate, readBurst, readMinConcurrency, readMaxConcurrency);
+        writes = new Budget("write", writeRate, writeBurst, writeMinConcurrency, writeMaxConcurrency);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Budget budget = isRead(request) ? reads : writes;
+
+        long wait = budget.acquire(request);
+        if (wait > 0) {
+            reject(response, budget, HttpStatus.TOO_MANY_REQUESTS, wait, "Too many requests, retry later");
+            return;
+        }
+
+        if (!budget.concurrency.tryAcquire()) {
+            reject(response, budget, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), "Server is busy, retry later");
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+
+            /* Streamed responses are only done once the async request completes */
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(budget, started));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                budget.concurrency.release(System.nanoTime() - started);
+            }
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+
+    private void reject(HttpServletResponse response, Budget budget, HttpStatus status, long wait, String message)
+            throws IOException {
+        meterRegistry.counter("admission.rejected", "budget", budget.name, "status", String.valueOf(status.value())).increment();
+        rejectedLog.warn("Rejected {} request with {} - {}", budget.name, status.value(), message);
+
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private class Budget {
+
+        private final String name;
+
+        private final ClientRateLimiter clients;
+
+        /* Buckets of every API key and address it is sent from */
+        private final ClientRateLimiter keyAddresses;
+
+        private final AdaptiveConcurrencyLimit concurrency;
+
+        Budget(String name, double rate, int burst, int minConcurrency, int maxConcurrency) {
+            this.name = name;
+            this.clients = new ClientRateLimiter(rate, burst, maxClients, System::nanoTime);
+            this.keyAddresses = new ClientRateLimiter(rate, burst, maxClients, System::nanoTime);
+            this.concurrency = new AdaptiveConcurrencyLimit(minConcurrency, maxConcurrency, latencyTarget.toNanos(), System::nanoTime);
+
+            Tags tags = Tags.of("budget", name);
+            meterRegistry.gauge("admission.limit", tags, concurrency, AdaptiveConcurrencyLimit::getLimit);
+            meterRegistry.gauge("admission.in-flight", tags, concurrency, AdaptiveConcurrencyLimit::getInFlight);
+        }
+
+        /**
+         * Takes a token from the bucket of the client, and from the one of its API key and address if it sent one
+         *
+         * @param request - the request to admit
+         * @return 0 if the request is admitted, or the nanos until the client may send it
+         */
+        long acquire(HttpServletRequest request) {
+            String address = request.getRemoteAddr();
+            String apiKey = request.getHeader(apiKeyHeader);
+            if (apiKey == null || apiKey.isEmpty()) {
+                return clients.acquire("address:" + address);
+            }
+
+            long wait = clients.acquire(apiKeys.contains(apiKey) ? "key:" + apiKey : "address:" + address);
+            return wait > 0 ? wait : keyAddresses.acquire(apiKey + "@" + address);
+        }
+    }
+
+    private static class Release implements AsyncListener {
+
+        private final Budget budget;
+
+        private final long started;
+
+        Release(Budget budget, long started) {
+            this.budget = budget;
+            this.started = started;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            budget.concurrency.release(System.nanoTime() - started);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
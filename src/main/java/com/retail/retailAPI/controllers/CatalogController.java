@@ -0,0 +1,107 @@
+package com.retail.retailAPI.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.services.CatalogService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Imports and exports the whole catalog in the shape of sample-data.json. Only available to admins
+ */
+@RestController
+@RequestMapping("api/v1/catalog")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CatalogController {
+
+    @Autowired
+    CatalogService catalogService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private ObjectReader entryReader;
+
+    private static Logger logger = LoggerFactory.getLogger(CatalogController.class);
+
+    @PostConstruct
+    public void init() {
+        entryReader = objectMapper.readerFor(JsonNode.class);
+    }
+
+    /**
+     * Imports a catalog given as a JSON array or as newline delimited JSON. The body is read as it is written.
+     * Every failure tells the id of the import, to resume it with
+     *
+     * @param request  - the request whose body holds the catalog
+     * @param importId - id of an earlier import to resume
+     * @return - the outcome of the import with its throughput
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, JsonStreams.NDJSON})
+    public ResponseEntity importCatalog(HttpServletRequest request, @RequestParam(required = false) String importId) {
+        String id = importId != null ? importId : UUID.randomUUID().toString();
+        try (MappingIterator<JsonNode> entries = entryReader.readValues(request.getInputStream())) {
+            return ResponseEntity.ok(catalogService.importCatalog(JsonStreams.iterator(entries), id));
+        } catch (IOException ex) {
+            logger.error("Invalid request - {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(String.format("Unable to read catalog import %s, resume it with the same import id", id));
+        } catch (ServerException ex) {
+            logger.error("Failed to import the catalog - {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
+        } catch(InvalidRequestException ex) {
+            logger.error("Invalid request - {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Exports the catalog streamed from the database, as a JSON array unless newline delimited JSON is preferred
+     *
+     * @param accept - media types accepted by the client
+     * @return - the catalog
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, JsonStreams.NDJSON})
+    public ResponseEntity<StreamingResponseBody> exportCatalog(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean ndjson = prefersLines(accept);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.parseMediaType(JsonStreams.NDJSON) : MediaType.APPLICATION_JSON)
+                .body(out -> catalogService.exportCatalog(out, ndjson));
+    }
+
+    /* Wildcards and a missing header get the JSON array, newline delimited JSON has to be asked for */
+    private static boolean prefersLines(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            if (type.equalsTypeAndSubtype(MediaType.parseMediaType(JsonStreams.NDJSON))) {
+                return true;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.retail.retailAPI.controllers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per client, kept as the theoretical arrival time of its next request (GCRA) so a
+ * bucket is a single AtomicLong updated without locks. Buckets of idle clients are full again
+ * and are dropped
+ */
+final class ClientRateLimiter {
+
+    /* Time a client earns one request in */
+    private final long interval;
+
+    /* How far ahead of the rate a client may get, its burst */
+    private final long tolerance;
+
+    private final Cache<String, AtomicLong> arrivals;
+
+    private final LongSupplier clock;
+
+    /**
+     * @param rate       - requests per second of a client
+     * @param burst      - requests a client may send at once after being idle
+     * @param maxClients - maximum number of clients tracked
+     * @param clock      - nano time source
+     */
+    ClientRateLimiter(double rate, int burst, long maxClients, LongSupplier clock) {
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.tolerance = interval * Math.max(0, burst - 1);
+        this.arrivals = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(tolerance + interval, TimeUnit.NANOSECONDS)
+                .build();
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of the client
+     *
+     * @param client - API key or address of the client
+     * @return 0 if the request is admitted, or the nanos until the client may send it
+     */
+    long acquire(String client) {
+        AtomicLong arrival = arrivals.get(client, key -> new AtomicLong(clock.getAsLong()));
+        while (true) {
+            long now = clock.getAsLong();
+            long expected = arrival.get();
+            long next = Math.max(expected, now) + interval;
+            long wait = next - now - interval - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(expected, next)) {
+                return 0;
+            }
+        }
+    }
+}
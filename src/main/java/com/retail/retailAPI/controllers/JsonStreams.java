@@ -0,0 +1,46 @@
+package com.retail.retailAPI.controllers;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Reads the values of a JSON array or newline delimited JSON request body one at a time,
+ * so the body is never held in memory as a whole
+ */
+final class JsonStreams {
+
+    /* Media type of newline delimited JSON */
+    static final String NDJSON = "application/x-ndjson";
+
+    private JsonStreams() {
+    }
+
+    /**
+     * @param values - values of the request body
+     * @return an iterator that throws InvalidRequestException when the body cannot be read
+     */
+    static <T> Iterator<T> iterator(MappingIterator<T> values) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return values.hasNextValue();
+                } catch (IOException ex) {
+                    throw new InvalidRequestException("Unable to read the request body - %s", ex.getMessage());
+                }
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return values.nextValue();
+                } catch (IOException ex) {
+                    throw new InvalidRequestException("Unable to read the request body - %s", ex.getMessage());
+                }
+            }
+        };
+    }
+}
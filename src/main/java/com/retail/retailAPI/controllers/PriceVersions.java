@@ -0,0 +1,65 @@
+package com.retail.retailAPI.controllers;
+
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+
+import java.util.Objects;
+
+/**
+ * Maps the version of a product price to and from the ETag and If-Match headers of the
+ * product endpoints. The ETag also covers the name and the price, so a read is revalidated
+ * when the name changes, while If-Match only compares the version
+ */
+final class PriceVersions {
+
+    private PriceVersions() {
+    }
+
+    /**
+     * Reads the version the price must be at from an If-Match header
+     *
+     * @param ifMatch - the If-Match header, may be null
+     * @return the expected version, or null when any version may be updated
+     * @throws InvalidRequestException if the header does not hold a single version
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+
+        /* The version is followed by the content hash in the ETag of a product read */
+        int hash = tag.indexOf('-');
+        if (hash > 0) {
+            tag = tag.substring(0, hash);
+        }
+
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException ex) {
+            throw new InvalidRequestException("If-Match must hold the version of the product price");
+        }
+    }
+
+    /**
+     * Builds the ETag of a product from its price version and a hash of its name and price
+     *
+     * @param product - the product, with or without its name, it must have a price
+     * @return strong ETag
+     */
+    static String eTag(Product product) {
+        Price price = product.getPrice();
+        int content = Objects.hashCode(product.getName());
+        content = 31 * content + Double.hashCode(price.getValue());
+        content = 31 * content + Objects.hashCode(price.getCurrencyCode());
+        return "\"" + price.getVersion() + "-" + Integer.toHexString(content) + "\"";
+    }
+}
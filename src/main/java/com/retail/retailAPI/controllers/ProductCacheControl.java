@@ -0,0 +1,34 @@
+package com.retail.retailAPI.controllers;
+
+import com.retail.retailAPI.config.AppConfig;
+import org.springframework.http.CacheControl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the Cache-Control header of product reads, which lets the CDN and the clients keep a
+ * product for max-age and then revalidate it with its ETag
+ */
+final class ProductCacheControl {
+
+    private ProductCacheControl() {
+    }
+
+    static CacheControl of(AppConfig appConfig) {
+        long maxAge = appConfig.getCacheMaxAge().getSeconds();
+        CacheControl cacheControl = maxAge > 0
+                ? CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic()
+                : CacheControl.noCache();
+
+        long staleWhileRevalidate = appConfig.getCacheStaleWhileRevalidate().getSeconds();
+        if (staleWhileRevalidate > 0) {
+            cacheControl = cacheControl.staleWhileRevalidate(staleWhileRevalidate, TimeUnit.SECONDS);
+        }
+
+        long staleIfError = appConfig.getCacheStaleIfError().getSeconds();
+        if (staleIfError > 0) {
+            cacheControl = cacheControl.staleIfError(staleIfError, TimeUnit.SECONDS);
+        }
+        return cacheControl;
+    }
+}
@@ -1,45 +1,176 @@
 package com.retail.retailAPI.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.config.AppConfig;
 import com.retail.retailAPI.exceptions.InvalidRequestException;
-import com.retail.retailAPI.exceptions.ProductNotFoundException;
-import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.models.PriceUpdate;
 import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductBatch;
+import com.retail.retailAPI.models.ProductLookup;
+import com.retail.retailAPI.models.ProductPayload;
 import com.retail.retailAPI.services.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("api/v1/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ProductController {
 
     @Autowired
     ProductService productService;
+
+    @Autowired
+    AppConfig appConfig;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    private ObjectReader priceUpdateReader;
+
+    /* Writes products of a batch straight to the response, leaving the stream open and unflushed */
+    private ObjectWriter batchWriter;
+
+    private CacheControl productCacheControl;
+
+    /* Only set when product.payload-cache.enabled is set */
+    private ProductPayloads productPayloads;
+
     private static Logger logger = LoggerFactory.getLogger(ProductController.class);
 
+    /* Warning sent with products whose name is the last known name */
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    private static final byte[] BATCH_PRODUCTS = "{\"products\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BATCH_ERRORS = "],\"errors\":".getBytes(StandardCharsets.UTF_8);
+
+
+    @PostConstruct
+    public void init() {
+        priceUpdateReader = objectMapper.readerFor(PriceUpdate.class);
+        productCacheControl = ProductCacheControl.of(appConfig);
+        batchWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        if (appConfig.isPayloadCache()) {
+            productPayloads = new ProductPayloads(objectMapper.writer(), productCaches, appConfig.isPayloadGzip());
+        }
+    }
 
     /**
-     * Retrieves product details
+     * Retrieves product details. Errors are mapped to responses by {@link ProductExceptionHandler}
      *
-     * @param id - productId.
-     * @return - the product instance if it is found in the database
+     * @param id             - productId.
+     * @param acceptEncoding - encodings the client accepts, a cached product is sent gzipped when it allows it
+     * @return - the product instance if it is found in the database, with its ETag and caching headers
      */
     @GetMapping("{id}")
-    public ResponseEntity getProductDetails(@PathVariable int id) {
-        try {
-            Optional<Product> product = productService.getProduct(id);
-            return ResponseEntity.of(product);
-        } catch (ProductNotFoundException ex) {
-            logger.error("Unable to get product details for given ID - {}", ex.getMessage());
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
-        } catch (ServerException ex) {
-            logger.error("Failed to retrieve product details - {}", ex.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
+    public ResponseEntity getProductDetails(@PathVariable int id,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        /* Serve the bytes of a product serialized by an earlier read */
+        if (productPayloads != null) {
+            ProductPayload payload = productPayloads.get(id);
+            if (payload != null) {
+                return ProductPayloads.respond(payload, acceptEncoding, productCacheControl);
+            }
+        }
+
+        ProductLookup lookup = productService.lookupProduct(id);
+        if (!lookup.isFound()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(lookup.getMessage());
+        }
+        if (lookup.getProduct().isStale()) {
+            return ResponseEntity.ok().header(HttpHeaders.WARNING, STALE_WARNING)
+                    .cacheControl(CacheControl.noStore()).body(lookup.getProduct());
+        }
+
+        /* A product stored without a price has no version, so it gets neither a payload nor an ETag */
+        if (lookup.getProduct().getPrice() == null) {
+            return ResponseEntity.ok().cacheControl(productCacheControl).body(lookup.getProduct());
+        }
+
+        if (productPayloads != null) {
+            return ProductPayloads.respond(productPayloads.build(lookup.getProduct()), acceptEncoding, productCacheControl);
+        }
+
+        /* A request whose If-None-Match holds the ETag gets a 304 and the product is not serialized */
+        return ResponseEntity.ok().eTag(PriceVersions.eTag(lookup.getProduct()))
+                .cacheControl(productCacheControl).body(lookup.getProduct());
+    }
+
+    /**
+     * Retrieves product details for a batch of ids
+     *
+     * @param ids - comma separated productIds.
+     * @return - the products that were found and an error for every id that could not be retrieved,
+     * written to the response one product at a time
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getBatchProductDetails(@RequestParam List<Integer> ids) {
+
+        /* Is the batch size within limits? */
+        if (ids.isEmpty() || ids.size() > appConfig.getBatchMaxSize()) {
+            throw new InvalidRequestException("Batch must contain between 1 and %d ids", appConfig.getBatchMaxSize());
+        }
+
+        ProductBatch batch = productService.getProducts(ids);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> writeBatch(batch, out));
+    }
+
+    /**
+     * Writes a batch in the shape of {@link ProductBatch}, reusing the serialized products of
+     * the payloads cache when it is enabled
+     *
+     * @param batch - the batch
+     * @param out   - the response body
+     */
+    private void writeBatch(ProductBatch batch, OutputStream out) throws IOException {
+        out.write(BATCH_PRODUCTS);
+        boolean first = true;
+        for (Product product : batch.getProducts()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+
+            if (productPayloads != null && !product.isStale() && product.getPrice() != null) {
+                out.write(productPayloads.json(product));
+            } else {
+                batchWriter.writeValue(out, product);
+            }
         }
+        out.write(BATCH_ERRORS);
+        batchWriter.writeValue(out, batch.getErrors());
+        out.write('}');
     }
 
     /**
@@ -47,35 +178,49 @@ public class ProductController {
      *
      * @param id      - this is the productId.
      * @param product - Product containing the updated price
-     * @return - the product object if it is successfully updated
+     * @param ifMatch - optional ETag of the price version the update is made against
+     * @return - the product object if it is successfully updated, with the ETag of the new price version
      */
     @PutMapping("{id}")
-    public ResponseEntity updateProductDetails(@PathVariable int id, @RequestBody(required = true) Product product) {
-        try {
+    public ResponseEntity updateProductDetails(@PathVariable int id, @RequestBody(required = true) Product product,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-            /* Is the product price valid? */
-            if (null == product.getPrice()) {
-                throw new InvalidRequestException("Product price cannot be null");
-            }
+        /* Is the product price valid? */
+        if (null == product.getPrice()) {
+            throw new InvalidRequestException("Product price cannot be null");
+        }
 
-            /* Does the request id match the product id? */
-            if (id != product.getId()) {
-                throw new InvalidRequestException("ProductId does not match the product");
-            }
+        /* Does the request id match the product id? */
+        if (id != product.getId()) {
+            throw new InvalidRequestException("ProductId does not match the product");
+        }
 
-            /* Update product price */
-            Optional<Product> updatedProduct = productService.updateProduct(id, product);
-            return ResponseEntity.of(updatedProduct);
-
-        } catch (ProductNotFoundException ex) {
-            logger.error("Unable to get product details for given ID - {}", ex.getMessage());
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
-        } catch (ServerException ex) {
-            logger.error("Failed to retrieve product details - {}", ex.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
-        } catch(InvalidRequestException ex) {
+        /* Update product price */
+        Optional<Product> updatedProduct = productService.updateProduct(id, product, PriceVersions.expectedVersion(ifMatch));
+
+        /* Serialize the updated product for the reads that follow, when its name is known */
+        if (productPayloads != null && updatedProduct.isPresent() && updatedProduct.get().getName() != null) {
+            productPayloads.build(updatedProduct.get());
+        }
+        return updatedProduct
+                .<ResponseEntity>map(updated -> ResponseEntity.ok().eTag(PriceVersions.eTag(updated)).body(updated))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Updates the prices of many products, given as a JSON array or as newline delimited JSON
+     * of {"id": ..., "current_price": {...}} objects. The body is read as it is applied
+     *
+     * @param request - the request whose body holds the price updates
+     * @return - the number of products updated and an error for every id that was not
+     */
+    @PutMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, JsonStreams.NDJSON})
+    public ResponseEntity updateProductPrices(HttpServletRequest request) {
+        try (MappingIterator<PriceUpdate> updates = priceUpdateReader.readValues(request.getInputStream())) {
+            return ResponseEntity.ok(productService.updatePrices(JsonStreams.iterator(updates)));
+        } catch (IOException ex) {
             logger.error("Invalid request - {}", ex.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Unable to read the price updates");
         }
     }
 }
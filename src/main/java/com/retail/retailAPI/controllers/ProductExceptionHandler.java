@@ -0,0 +1,58 @@
+package com.retail.retailAPI.controllers;
+
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
+import com.retail.retailAPI.services.RateLimitedLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.Duration;
+
+/**
+ * Maps the exceptions of the product controllers to error responses holding the exception message.
+ * Failures repeat for every request while a client or a dependency misbehaves, so they are logged
+ * at most once a second per kind
+ */
+@RestControllerAdvice(basePackageClasses = ProductController.class)
+public class ProductExceptionHandler {
+
+    private static Logger logger = LoggerFactory.getLogger(ProductExceptionHandler.class);
+
+    private static RateLimitedLog notFoundLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog conflictLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog invalidLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog serverLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<String> notFound(ProductNotFoundException ex) {
+        notFoundLog.warn("Unable to get product details for given ID - {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<String> conflict(VersionConflictException ex) {
+        conflictLog.warn("Rejected product update - {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<String> invalidRequest(InvalidRequestException ex) {
+        invalidLog.warn("Invalid request - {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ServerException.class)
+    public ResponseEntity<String> serverError(ServerException ex) {
+        serverLog.error("Failed to serve product request - {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
+    }
+}
@@ -0,0 +1,154 @@
+package com.retail.retailAPI.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductPayload;
+import org.springframework.cache.Cache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes products once into the payloads cache and answers reads with the cached bytes,
+ * gzipped when the client accepts it and the gzipped bytes were kept
+ */
+final class ProductPayloads {
+
+    private final ObjectWriter productWriter;
+
+    private final ProductCaches productCaches;
+
+    private final boolean gzip;
+
+    /**
+     * @param productWriter - writer of the product responses
+     * @param productCaches - caches holding the payloads and the prices they are checked against
+     * @param gzip          - whether to keep the gzipped bytes too
+     */
+    ProductPayloads(ObjectWriter productWriter, ProductCaches productCaches, boolean gzip) {
+        this.productWriter = productWriter;
+        this.productCaches = productCaches;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Gets the cached payload of a product, as long as it is at the version of the cached price
+     *
+     * @param id ProductId
+     * @return the payload or null when it is not cached or outdated
+     */
+    ProductPayload get(int id) {
+        ProductPayload payload = productCaches.getPayload(id);
+        if (payload == null) {
+            return null;
+        }
+
+        Cache.ValueWrapper price = productCaches.getPrice(id);
+        if (price == null || !(price.get() instanceof Price) || ((Price) price.get()).getVersion() != payload.getVersion()) {
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * Serializes the product and caches its payload
+     *
+     * @param product - a product with a price that is not stale
+     * @return the payload
+     */
+    ProductPayload build(Product product) {
+        int id = product.getId();
+        byte[] json;
+        try {
+            json = productWriter.writeValueAsBytes(product);
+        } catch (JsonProcessingException ex) {
+            throw new ServerException("Unable to serialize the product with id - %d", id);
+        }
+
+        byte[] gzipped = gzip ? gzip(json) : null;
+        ProductPayload payload = new ProductPayload(product.getPrice().getVersion(), PriceVersions.eTag(product), json,
+                gzipped != null && gzipped.length < json.length ? gzipped : null);
+        productCaches.putPayload(id, payload);
+
+        /* A name written meanwhile evicted the payload before it was put, drop it if it is already outdated */
+        if (!Objects.equals(productCaches.getName(id), product.getName())) {
+            productCaches.evictPayload(id);
+        }
+        return payload;
+    }
+
+    /**
+     * Gets the JSON of a product of a batch, from its payload or serialized and cached
+     *
+     * @param product - a product with a price that is not stale
+     * @return the JSON
+     */
+    byte[] json(Product product) {
+        ProductPayload payload = get(product.getId());
+        if (payload == null || payload.getVersion() != product.getPrice().getVersion()) {
+            payload = build(product);
+        }
+        return payload.getJson();
+    }
+
+    /**
+     * Builds the response of a product read from its payload
+     *
+     * @param payload        - the payload
+     * @param acceptEncoding - the Accept-Encoding header, may be null
+     * @param cacheControl   - Cache-Control of product reads
+     * @return the response holding the JSON or the gzipped JSON
+     */
+    static ResponseEntity<byte[]> respond(ProductPayload payload, String acceptEncoding, CacheControl cacheControl) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(cacheControl);
+
+        if (payload.getGzip() == null) {
+            return response.eTag(payload.getETag()).body(payload.getJson());
+        }
+
+        /* Each encoding is a representation of its own with its own ETag */
+        response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            String eTag = payload.getETag();
+            return response.eTag(eTag.substring(0, eTag.length() - 1) + "-gzip\"")
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(payload.getGzip());
+        }
+        return response.eTag(payload.getETag()).body(payload.getJson());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package com.retail.retailAPI.controllers;
+
+import com.retail.retailAPI.config.AppConfig;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.services.RateLimitedLog;
+import com.retail.retailAPI.services.ReactiveProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Reactive variant of {@link ProductController}. It is only active when the application
+ * runs with spring.main.web-application-type=reactive and keeps the same JSON contract
+ */
+@RestController
+@RequestMapping("api/v1/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveProductController {
+
+    @Autowired
+    ReactiveProductService reactiveProductService;
+
+    @Autowired
+    AppConfig appConfig;
+
+    private static Logger logger = LoggerFactory.getLogger(ReactiveProductController.class);
+
+    /* Expected outcomes of bad requests are logged at most once a second, so they cannot flood the log */
+    private static RateLimitedLog notFoundLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog conflictLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog invalidLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private static RateLimitedLog serverLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    private CacheControl productCacheControl;
+
+    @PostConstruct
+    public void init() {
+        productCacheControl = ProductCacheControl.of(appConfig);
+    }
+
+    /**
+     * Retrieves product details
+     *
+     * @param id - productId.
+     * @return - the product instance if it is found in the database, with its ETag and caching headers
+     */
+    @GetMapping("{id}")
+    public Mono<ResponseEntity> getProductDetails(@PathVariable int id) {
+
+        /* A request whose If-None-Match holds the ETag gets a 304 and the product is not serialized */
+        return reactiveProductService.getProduct(id)
+                .<ResponseEntity>map(this::productResponse)
+                .onErrorResume(ProductNotFoundException.class, ex -> {
+                    notFoundLog.warn("Unable to get product details for given ID - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.NOT_FOUND, ex.getMessage());
+                })
+                .onErrorResume(ServerException.class, ex -> {
+                    serverLog.error("Failed to retrieve product details - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+                });
+    }
+
+    /**
+     * Updates product details
+     *
+     * @param id      - this is the productId.
+     * @param product - Product containing the updated price
+     * @param ifMatch - optional ETag of the price version the update is made against
+     * @return - the product object if it is successfully updated, with the ETag of the new price version
+     */
+    @PutMapping("{id}")
+    public Mono<ResponseEntity> updateProductDetails(@PathVariable int id, @RequestBody(required = true) Product product,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> {
+
+                    /* Is the product price valid? */
+                    if (null == product.getPrice()) {
+                        throw new InvalidRequestException("Product price cannot be null");
+                    }
+
+                    /* Does the request id match the product id? */
+                    if (id != product.getId()) {
+                        throw new InvalidRequestException("ProductId does not match the product");
+                    }
+
+                    /* Update product price */
+                    return reactiveProductService.updateProduct(id, product, PriceVersions.expectedVersion(ifMatch));
+                })
+                .<ResponseEntity>map(updated -> ResponseEntity.ok().eTag(PriceVersions.eTag(updated)).body(updated))
+                .onErrorResume(ProductNotFoundException.class, ex -> {
+                    notFoundLog.warn("Unable to get product details for given ID - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.NOT_FOUND, ex.getMessage());
+                })
+                .onErrorResume(VersionConflictException.class, ex -> {
+                    conflictLog.warn("Rejected product update - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.CONFLICT, ex.getMessage());
+                })
+                .onErrorResume(ServerException.class, ex -> {
+                    serverLog.error("Failed to retrieve product details - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+                })
+                .onErrorResume(InvalidRequestException.class, ex -> {
+                    invalidLog.warn("Invalid request - {}", ex.getMessage());
+                    return errorResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+                });
+    }
+
+    private ResponseEntity productResponse(Product product) {
+        /* A product stored without a price has no version to tag it with */
+        if (product.getPrice() == null) {
+            return ResponseEntity.ok().cacheControl(productCacheControl).body(product);
+        }
+        return ResponseEntity.ok().eTag(PriceVersions.eTag(product)).cacheControl(productCacheControl).body(product);
+    }
+
+    private Mono<ResponseEntity> errorResponse(HttpStatus status, String message) {
+        return Mono.just(ResponseEntity.status(status).body(message));
+    }
+}
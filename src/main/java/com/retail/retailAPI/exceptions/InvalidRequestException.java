@@ -1,12 +1,15 @@
 package com.retail.retailAPI.exceptions;
 
+/**
+ * The request failed validation. Stackless, it becomes a 400
+ */
 public class InvalidRequestException extends  RuntimeException{
     public InvalidRequestException(String message)
     {
-        super(message);
+        super(message, null, false, false);
     }
     public InvalidRequestException(String message, Object...args)
     {
-        super(String.format(message,args));
+        super(String.format(message,args), null, false, false);
     }
 }
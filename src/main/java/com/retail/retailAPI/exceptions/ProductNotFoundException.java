@@ -1,13 +1,16 @@
 package com.retail.retailAPI.exceptions;
 
-
+/**
+ * The product does not exist locally or in redsky. Created without a stack trace as it is an
+ * expected outcome that only ever becomes a 404
+ */
 public class ProductNotFoundException extends RuntimeException {
 
     public ProductNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public ProductNotFoundException(String message, Object... args) {
-        super(String.format(message, args));
+        super(String.format(message, args), null, false, false);
     }
 }
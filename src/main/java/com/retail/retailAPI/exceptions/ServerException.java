@@ -1,12 +1,16 @@
 package com.retail.retailAPI.exceptions;
 
+/**
+ * The product could not be read or written. The message is all that is reported, so no stack
+ * trace is captured
+ */
 public class ServerException extends RuntimeException {
 
     public ServerException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public ServerException(String message, Object... args) {
-        super(String.format(message, args));
+        super(String.format(message, args), null, false, false);
     }
 }
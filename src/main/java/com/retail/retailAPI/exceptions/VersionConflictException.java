@@ -0,0 +1,15 @@
+package com.retail.retailAPI.exceptions;
+
+/**
+ * The price was updated since the version the caller expected. Stackless, it becomes a 409
+ */
+public class VersionConflictException extends RuntimeException {
+
+    public VersionConflictException(String message) {
+        super(message, null, false, false);
+    }
+
+    public VersionConflictException(String message, Object... args) {
+        super(String.format(message, args), null, false, false);
+    }
+}
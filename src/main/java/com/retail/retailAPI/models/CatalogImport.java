@@ -0,0 +1,50 @@
+package com.retail.retailAPI.models;
+
+/**
+ * This is the data model for the outcome of a catalog import. The import can be resumed
+ * with its id, skipping the products that were already written
+ */
+public class CatalogImport {
+
+    private String importId;
+
+    private long skipped;
+
+    private long imported;
+
+    private long invalid;
+
+    private long elapsedMillis;
+
+    public CatalogImport(String importId, long skipped, long imported, long invalid, long elapsedMillis) {
+        this.importId = importId;
+        this.skipped = skipped;
+        this.imported = imported;
+        this.invalid = invalid;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getProductsPerSecond() {
+        return elapsedMillis == 0 ? imported : imported * 1000 / elapsedMillis;
+    }
+}
@@ -1,27 +1,103 @@
 package com.retail.retailAPI.models;
 
-import org.springframework.data.mongodb.core.mapping.Field;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
 
 /**
- * This is the data model for the Price of the product
+ * This is the data model for the Price of the product. The amount is held as a whole number of
+ * minor units of the currency, so there is no rounding error in price arithmetic, and the currency
+ * is the shared instance of its code instead of a string per price. Prices keep the value and
+ * currency code shape in JSON and in the database, see PriceConverters
  */
-public class Price {
+public class Price implements Serializable {
+
+    /* Changed with the representation, prices cached by older nodes are read as misses */
+    private static final long serialVersionUID = 2L;
+
+    /* Minor units kept for currencies without any, such as precious metals */
+    private static final int PSEUDO_CURRENCY_DIGITS = 4;
 
-    private double value;
+    private final long units;
 
-    @Field("currency_code")
-    private String currencyCode;
+    private final Currency currency;
 
-    public Price(double value, String currencyCode) {
-        this.value = value;
-        this.currencyCode = currencyCode;
+    /* Bumped on every price update, conditional updates are made against it */
+    private long version;
+
+    /**
+     * @param value        - amount in the currency, rounded half even to its minor units
+     * @param currencyCode - ISO 4217 code of the currency
+     * @throws IllegalArgumentException if the value is not a number or the currency is unknown
+     * @throws InvalidRequestException  if the value is too large to be held in minor units
+     */
+    @JsonCreator
+    public Price(@JsonProperty("value") double value, @JsonProperty("currencyCode") String currencyCode) {
+        this(value, currencyCode, 0);
+    }
+
+    public Price(double value, String currencyCode, long version) {
+        this.currency = currencyCode == null ? null : Currency.getInstance(currencyCode);
+        this.units = toUnits(value, currency);
+        this.version = version;
+    }
+
+    /**
+     * @param units    - amount in minor units of the currency
+     * @param currency - the currency
+     * @param version  - version of the price
+     */
+    public Price(long units, Currency currency, long version) {
+        this.units = units;
+        this.currency = currency;
+        this.version = version;
     }
 
     public double getValue() {
-        return value;
+        return units / Math.pow(10, digits(currency));
     }
 
     public String getCurrencyCode() {
-        return currencyCode;
+        return currency == null ? null : currency.getCurrencyCode();
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the amount in minor units of the currency, such as cents
+     */
+    @JsonIgnore
+    public long getUnits() {
+        return units;
+    }
+
+    @JsonIgnore
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    private static long toUnits(double value, Currency currency) {
+        try {
+            return BigDecimal.valueOf(value)
+                    .setScale(digits(currency), RoundingMode.HALF_EVEN)
+                    .unscaledValue()
+                    .longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new InvalidRequestException("Price value %s is out of range", value);
+        }
+    }
+
+    private static int digits(Currency currency) {
+        int digits = currency == null ? 2 : currency.getDefaultFractionDigits();
+        return digits < 0 ? PSEUDO_CURRENCY_DIGITS : digits;
     }
 }
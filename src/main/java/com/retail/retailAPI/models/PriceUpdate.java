@@ -0,0 +1,30 @@
+package com.retail.retailAPI.models;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This is the data model for one price change of a bulk price update
+ */
+public class PriceUpdate {
+
+    private int id;
+
+    private Price price;
+
+    @JsonCreator
+    public PriceUpdate(@JsonProperty("id") int id,
+                       @JsonProperty("current_price") @JsonAlias("price") Price price) {
+        this.id = id;
+        this.price = price;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Price getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,27 @@
+package com.retail.retailAPI.models;
+
+import java.util.Map;
+
+/**
+ * This is the data model for the outcome of a bulk price update. It holds the number
+ * of products that were updated and an error message for every id that was not
+ */
+public class PriceUpdateBatch {
+
+    private int updated;
+
+    private Map<Integer, String> errors;
+
+    public PriceUpdateBatch(int updated, Map<Integer, String> errors) {
+        this.updated = updated;
+        this.errors = errors;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public Map<Integer, String> getErrors() {
+        return errors;
+    }
+}
@@ -1,14 +1,20 @@
 package com.retail.retailAPI.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.io.Serializable;
+
 /**
  * This is the Data Model for the product
  */
 @Document(collection = "products")
-public class Product {
+public class Product implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @Id
     private int id;
@@ -18,6 +24,11 @@ public class Product {
     @Field("current_price")
     private Price price;
 
+    /* Set when the name is the last known name because redsky was unavailable */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;
+
     public Product(int id, String name, Price price)
     {
         this.id = id;
@@ -50,4 +61,12 @@ public class Product {
         return price;
     }
 
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
 }
@@ -0,0 +1,28 @@
+package com.retail.retailAPI.models;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the data model for a batch lookup. It holds the products that were found
+ * and an error message for every id that could not be retrieved
+ */
+public class ProductBatch {
+
+    private List<Product> products;
+
+    private Map<Integer, String> errors;
+
+    public ProductBatch(List<Product> products, Map<Integer, String> errors) {
+        this.products = products;
+        this.errors = errors;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public Map<Integer, String> getErrors() {
+        return errors;
+    }
+}
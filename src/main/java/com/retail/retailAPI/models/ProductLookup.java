@@ -0,0 +1,57 @@
+package com.retail.retailAPI.models;
+
+/**
+ * This is the outcome of a single product lookup. A product that does not exist, locally or
+ * in redsky, is an expected outcome and is returned instead of thrown. The message is only
+ * formatted when it is asked for
+ */
+public class ProductLookup {
+
+    private final int id;
+
+    private final Product product;
+
+    private final String missing;
+
+    private ProductLookup(int id, Product product, String missing) {
+        this.id = id;
+        this.product = product;
+        this.missing = missing;
+    }
+
+    public static ProductLookup found(Product product) {
+        return new ProductLookup(product.getId(), product, null);
+    }
+
+    /**
+     * @param id - ProductId
+     * @return the outcome for a product that is not in the database
+     */
+    public static ProductLookup notFound(int id) {
+        return new ProductLookup(id, null, "Unable to find the item for ID - %d");
+    }
+
+    /**
+     * @param id - ProductId
+     * @return the outcome for a product that redsky has no name for
+     */
+    public static ProductLookup nameNotFound(int id) {
+        return new ProductLookup(id, null, "Unable to find product in redsky API");
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isFound() {
+        return product != null;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public String getMessage() {
+        return isFound() ? null : String.format(missing, id);
+    }
+}
@@ -0,0 +1,43 @@
+package com.retail.retailAPI.models;
+
+/**
+ * This is a product serialized once for the responses of many reads. It holds the JSON
+ * and, when it is smaller, the gzipped JSON along with the ETag and the price version
+ * the product was serialized at
+ */
+public class ProductPayload {
+
+    private final long version;
+
+    private final String eTag;
+
+    private final byte[] json;
+
+    private final byte[] gzip;
+
+    public ProductPayload(long version, String eTag, byte[] json, byte[] gzip) {
+        this.version = version;
+        this.eTag = eTag;
+        this.json = json;
+        this.gzip = gzip;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * @return the gzipped JSON or null if it is not kept
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+}
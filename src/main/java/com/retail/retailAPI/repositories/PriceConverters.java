@@ -0,0 +1,73 @@
+package com.retail.retailAPI.repositories;
+
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.services.RateLimitedLog;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes prices in the shape they have always been stored in, a double value, the
+ * currency_code string and the version, while they are held as minor units and a shared
+ * currency in memory. A stored price that cannot be held that way, such as one in a legacy code
+ * that is not ISO 4217, is read as no price and logged instead of failing the whole read
+ */
+public final class PriceConverters {
+
+    private static Logger logger = LoggerFactory.getLogger(PriceConverters.class);
+
+    private static RateLimitedLog unreadableLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    static final String VALUE = "value";
+
+    static final String CURRENCY_CODE = "currency_code";
+
+    static final String VERSION = "version";
+
+    private PriceConverters() {
+    }
+
+    public static List<Converter<?, ?>> converters() {
+        return Arrays.asList(new PriceWriter(), new PriceReader());
+    }
+
+    @WritingConverter
+    public static class PriceWriter implements Converter<Price, Document> {
+
+        @Override
+        public Document convert(Price price) {
+            Document document = new Document();
+            document.put(VALUE, price.getValue());
+            document.put(CURRENCY_CODE, price.getCurrencyCode());
+            document.put(VERSION, price.getVersion());
+            return document;
+        }
+    }
+
+    @ReadingConverter
+    public static class PriceReader implements Converter<Document, Price> {
+
+        @Override
+        public Price convert(Document document) {
+            Number value = (Number) document.get(VALUE);
+            Number version = (Number) document.get(VERSION);
+
+            /* Prices stored before versioning have no version, they are at version 0 */
+            try {
+                return new Price(value == null ? 0 : value.doubleValue(), document.getString(CURRENCY_CODE),
+                        version == null ? 0 : version.longValue());
+            } catch (IllegalArgumentException | InvalidRequestException ex) {
+                unreadableLog.error("Unable to read stored price {} {} - {}", value, document.get(CURRENCY_CODE), ex.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.retail.retailAPI.repositories;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Collection;
+
+/**
+ * Queries shared by the blocking and the reactive reads of the GET path. They fetch only the
+ * current price and the last known name of a product, the rest of the document stays on the server
+ */
+final class PriceReads {
+
+    static final Document PROJECTION = new Document("current_price", 1).append("name", 1);
+
+    private PriceReads() {
+    }
+
+    static Bson product(int id) {
+        return Filters.eq("_id", id);
+    }
+
+    static Bson products(Collection<Integer> ids) {
+        return Filters.in("_id", ids);
+    }
+}
@@ -10,4 +10,4 @@ import org.springframework.stereotype.Repository;
  * This is the Data Access layer that accesses the database
  * to retrieve/update the product details
  */
-public interface PriceRepository extends MongoRepository<Product, Integer> { }
+public interface PriceRepository extends MongoRepository<Product, Integer>, PriceRepositoryCustom { }
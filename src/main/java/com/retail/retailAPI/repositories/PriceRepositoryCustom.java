@@ -0,0 +1,67 @@
+package com.retail.retailAPI.repositories;
+
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Targeted reads and updates of the products collection that do not need the whole document
+ */
+public interface PriceRepositoryCustom {
+
+    /**
+     * Reads the current price and the last known name of a product with the product read preference
+     *
+     * @param id - productId
+     * @return the product, or empty if it does not exist
+     */
+    Optional<Product> findPrice(int id);
+
+    /**
+     * Reads the current price and the last known name of many products in a single query with the product
+     * read preference
+     *
+     * @param ids - productIds
+     * @return the products that exist
+     */
+    List<Product> findPrices(Collection<Integer> ids);
+
+    /**
+     * Stores the last known name of a product with the product, to be served when redsky is unavailable
+     *
+     * @param id   - productId
+     * @param name - name of the product
+     */
+    void updateName(int id, String name);
+
+    /**
+     * Sets the current price of a product and bumps its version in a single atomic update
+     *
+     * @param id              - productId
+     * @param price           - new price
+     * @param expectedVersion - only update while the price is at this version, null to update whatever the version
+     * @return the product as it is after the update, or null if no product with the id is at the expected version
+     */
+    Product updatePrice(int id, Price price, Long expectedVersion);
+
+    /**
+     * Sets the current price of many products in a single unordered bulk write, without reading them first.
+     * The prices are then read back from the primary in a single query, for their new versions
+     *
+     * @param prices - new price by productId
+     * @return the price of every updated product as it is stored after the write, products that do not exist
+     * are left out
+     */
+    Map<Integer, Price> updatePrices(Map<Integer, Price> prices);
+
+    /**
+     * Inserts the products, or sets the name and price of the ones that exist, in a single unordered bulk write
+     *
+     * @param products - products to import
+     */
+    void upsertProducts(List<Product> products);
+}
@@ -0,0 +1,99 @@
+package com.retail.retailAPI.repositories;
+
+import com.mongodb.ReadPreference;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Implements the targeted reads of {@link PriceRepositoryCustom} with projections and the product
+ * read preference, and its updates with $set operations, none of which read the product before
+ * writing it
+ */
+public class PriceRepositoryCustomImpl implements PriceRepositoryCustom {
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ReadPreference productReadPreference;
+
+    @Override
+    public Optional<Product> findPrice(int id) {
+        Document document = mongoTemplate.execute(Product.class, collection -> collection
+                .withReadPreference(productReadPreference)
+                .find(PriceReads.product(id))
+                .projection(PriceReads.PROJECTION)
+                .first());
+        return Optional.ofNullable(document).map(found -> mongoTemplate.getConverter().read(Product.class, found));
+    }
+
+    @Override
+    public List<Product> findPrices(Collection<Integer> ids) {
+        List<Document> documents = mongoTemplate.execute(Product.class, collection -> collection
+                .withReadPreference(productReadPreference)
+                .find(PriceReads.products(ids))
+                .projection(PriceReads.PROJECTION)
+                .into(new ArrayList<>(ids.size())));
+        return documents.stream()
+                .map(found -> mongoTemplate.getConverter().read(Product.class, found))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void updateName(int id, String name) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)), Update.update("name", name), Product.class);
+    }
+
+    @Override
+    public Product updatePrice(int id, Price price, Long expectedVersion) {
+        return mongoTemplate.findAndModify(PriceUpdates.product(id, expectedVersion), PriceUpdates.price(price),
+                PriceUpdates.RETURN_NEW, Product.class);
+    }
+
+    @Override
+    public Map<Integer, Price> updatePrices(Map<Integer, Price> prices) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<Integer, Price> price : prices.entrySet()) {
+            bulkOps.updateOne(PriceUpdates.product(price.getKey(), null), PriceUpdates.price(price.getValue()));
+        }
+        bulkOps.execute();
+
+        /* The bulk write does not return the versions it set, read them back from the primary with a price only query */
+        Query updated = Query.query(Criteria.where("_id").in(prices.keySet()));
+        updated.fields().include("current_price");
+
+        Map<Integer, Price> stored = new HashMap<>();
+        for (Product product : mongoTemplate.find(updated, Product.class)) {
+            stored.put(product.getId(), product.getPrice());
+        }
+        return stored;
+    }
+
+    @Override
+    public void upsertProducts(List<Product> products) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Product product : products) {
+            Update update = PriceUpdates.price(product.getPrice());
+            if (product.getName() != null) {
+                update.set("name", product.getName());
+            }
+            bulkOps.upsert(PriceUpdates.product(product.getId(), null), update);
+        }
+        bulkOps.execute();
+    }
+}
@@ -0,0 +1,50 @@
+package com.retail.retailAPI.repositories;
+
+import com.retail.retailAPI.models.Price;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+
+/**
+ * Queries and updates shared by the blocking and the reactive price updates. A price update
+ * sets the fields of the current price and bumps its version in the same atomic operation
+ */
+final class PriceUpdates {
+
+    /* Return the document as it is after the update */
+    static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    /* Prices are written by PriceConverters, so their fields are named as they are stored */
+    private static final String CURRENT_PRICE = "current_price.";
+
+    private PriceUpdates() {
+    }
+
+    /**
+     * Matches the product, and when an expected version is given only while its price is still at that version
+     *
+     * @param id              - productId
+     * @param expectedVersion - version the price must be at, or null to update whatever the version
+     * @return the query
+     */
+    static Query product(int id, Long expectedVersion) {
+        Criteria criteria = Criteria.where("_id").is(id);
+        if (expectedVersion != null) {
+            /* Prices stored before versioning have no version, they are at version 0 */
+            criteria = expectedVersion == 0
+                    ? criteria.and(CURRENT_PRICE + PriceConverters.VERSION).in(Arrays.asList(0L, null))
+                    : criteria.and(CURRENT_PRICE + PriceConverters.VERSION).is(expectedVersion);
+        }
+        return Query.query(criteria);
+    }
+
+    static Update price(Price price) {
+        return new Update()
+                .set(CURRENT_PRICE + PriceConverters.VALUE, price.getValue())
+                .set(CURRENT_PRICE + PriceConverters.CURRENCY_CODE, price.getCurrencyCode())
+                .inc(CURRENT_PRICE + PriceConverters.VERSION, 1L);
+    }
+}
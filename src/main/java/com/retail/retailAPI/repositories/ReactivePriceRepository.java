@@ -0,0 +1,13 @@
+package com.retail.retailAPI.repositories;
+
+import com.retail.retailAPI.models.Product;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+
+/**
+ * This is the non-blocking Data Access layer used by the reactive web stack
+ * to retrieve/update the product details
+ */
+public interface ReactivePriceRepository extends ReactiveMongoRepository<Product, Integer>, ReactivePriceRepositoryCustom { }
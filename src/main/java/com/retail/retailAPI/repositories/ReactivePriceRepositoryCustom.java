@@ -0,0 +1,29 @@
+package com.retail.retailAPI.repositories;
+
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link PriceRepositoryCustom}
+ */
+public interface ReactivePriceRepositoryCustom {
+
+    /**
+     * Reads the current price and the last known name of a product with the product read preference
+     *
+     * @param id - productId
+     * @return the product, or empty if it does not exist
+     */
+    Mono<Product> findPrice(int id);
+
+    /**
+     * Sets the current price of a product and bumps its version in a single atomic update
+     *
+     * @param id              - productId
+     * @param price           - new price
+     * @param expectedVersion - only update while the price is at this version, null to update whatever the version
+     * @return the product as it is after the update, or empty if no product with the id is at the expected version
+     */
+    Mono<Product> updatePrice(int id, Price price, Long expectedVersion);
+}
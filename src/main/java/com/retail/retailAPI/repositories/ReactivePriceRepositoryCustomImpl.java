@@ -0,0 +1,37 @@
+package com.retail.retailAPI.repositories;
+
+import com.mongodb.ReadPreference;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+/**
+ * Implements the targeted reads and updates of {@link ReactivePriceRepositoryCustom} the same way as {@link PriceRepositoryCustomImpl}
+ */
+public class ReactivePriceRepositoryCustomImpl implements ReactivePriceRepositoryCustom {
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    ReadPreference productReadPreference;
+
+    @Override
+    public Mono<Product> findPrice(int id) {
+        return reactiveMongoTemplate.execute(Product.class, collection -> collection
+                .withReadPreference(productReadPreference)
+                .find(PriceReads.product(id))
+                .projection(PriceReads.PROJECTION)
+                .first())
+                .next()
+                .map(found -> reactiveMongoTemplate.getConverter().read(Product.class, found));
+    }
+
+    @Override
+    public Mono<Product> updatePrice(int id, Price price, Long expectedVersion) {
+        return reactiveMongoTemplate.findAndModify(PriceUpdates.product(id, expectedVersion), PriceUpdates.price(price),
+                PriceUpdates.RETURN_NEW, Product.class);
+    }
+}
@@ -0,0 +1,148 @@
+package com.retail.retailAPI.services;
+
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.config.AppConfig;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the product caches before the application reports ready, so the first requests after a
+ * deploy do not all miss. The products warmed are the configured ids followed by the hottest
+ * products of the last run, which are taken from the frequency sketch of the caches and stored
+ * in the database periodically and on shutdown. Health reports out of service until the
+ * warm-up is done
+ */
+@Component
+@ConditionalOnProperty(name = "cache.warm-up.enabled", havingValue = "true")
+public class CacheWarmUp implements ApplicationRunner, HealthIndicator {
+
+    private static Logger logger = LoggerFactory.getLogger(CacheWarmUp.class);
+
+    /* Collection holding the hottest products of the last run */
+    private static final String HOT_PRODUCTS = "hot_products";
+
+    private static final String HOT_PRODUCTS_ID = "products";
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    AppConfig appConfig;
+
+    @Value("${cache.warm-up.ids}")
+    private List<Integer> configuredIds;
+
+    @Value("${cache.warm-up.size}")
+    private int size;
+
+    @Value("${cache.warm-up.persist-interval}")
+    private Duration persistInterval;
+
+    private volatile boolean warm;
+
+    private ScheduledExecutorService persister;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Set<Integer> ids = new LinkedHashSet<>(configuredIds);
+        ids.addAll(loadHotProducts());
+
+        logger.info("Warming the product caches with {} products...", ids.size());
+        long started = System.currentTimeMillis();
+        int warmed = 0;
+
+        /* Batched lookups read the prices with one query and fetch the names concurrently */
+        List<Integer> all = new ArrayList<>(ids);
+        int batchSize = appConfig.getBatchMaxSize();
+        for (int from = 0; from < all.size(); from += batchSize) {
+            List<Integer> batch = all.subList(from, Math.min(from + batchSize, all.size()));
+            try {
+                warmed += productService.getProducts(batch).getProducts().size();
+            } catch (RuntimeException ex) {
+                logger.error("Unable to warm a batch of {} products - {}", batch.size(), ex.getMessage());
+            }
+        }
+
+        logger.info("Warmed {} of {} products in {} ms", warmed, ids.size(), System.currentTimeMillis() - started);
+        warm = true;
+
+        persister = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("hot-products-"));
+        persister.scheduleWithFixedDelay(this::storeHotProducts,
+                persistInterval.toMillis(), persistInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Health health() {
+        return warm ? Health.up().build() : Health.outOfService().withDetail("cache", "warming up").build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (persister != null) {
+            persister.shutdownNow();
+        }
+        storeHotProducts();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> loadHotProducts() {
+        try {
+            Document hot = mongoTemplate.findById(HOT_PRODUCTS_ID, Document.class, HOT_PRODUCTS);
+            if (hot == null) {
+                return Collections.emptyList();
+            }
+            List<Integer> ids = (List<Integer>) hot.get("ids");
+            return ids.subList(0, Math.min(size, ids.size()));
+        } catch (DataAccessException ex) {
+            logger.error("Unable to load the hot products - {}", ex.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private void storeHotProducts() {
+        List<Integer> hottest = productCaches.hottestProducts(size);
+        if (hottest.isEmpty()) {
+            return;
+        }
+
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(HOT_PRODUCTS_ID)),
+                    Update.update("ids", hottest).set("updated", new Date()), HOT_PRODUCTS);
+        } catch (DataAccessException ex) {
+            logger.error("Unable to store the hot products - {}", ex.getMessage());
+        }
+    }
+}
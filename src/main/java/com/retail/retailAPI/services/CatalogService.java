@@ -0,0 +1,339 @@
+package com.retail.retailAPI.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.retail.retailAPI.cache.KnownProductIds;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.models.CatalogImport;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Imports and exports the whole catalog in the shape of sample-data.json, as a JSON array or
+ * newline delimited JSON. Imports are read as a stream and written in batches of bulk upserts by
+ * parallel writers, reading waits while too many batches are pending. Every import records how
+ * far it got so a failed import can be resumed. Exports stream the collection through a cursor
+ */
+@Service
+public class CatalogService {
+
+    private static Logger logger = LoggerFactory.getLogger(CatalogService.class);
+
+    /* Collection holding how far every import got */
+    private static final String CHECKPOINTS = "catalog_imports";
+
+    @Autowired
+    PriceRepository priceRepository;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /* Only present when cache.known-ids.enabled is set */
+    @Autowired(required = false)
+    KnownProductIds knownProductIds;
+
+    @Value("${catalog.import.batch-size}")
+    private int batchSize;
+
+    @Value("${catalog.import.parallelism}")
+    private int parallelism;
+
+    private final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private ExecutorService writers;
+
+    private Counter importedProducts;
+
+    @PostConstruct
+    public void init() {
+        writers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("catalog-"));
+        importedProducts = meterRegistry.counter("catalog.import.products");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Imports the products of a catalog, inserting new products and setting the name and price
+     * of existing ones. An import given the id of an earlier import skips the products that
+     * import already wrote
+     *
+     * @param entries  - the catalog entries, consumed as they are written
+     * @param importId - id of the import to resume, or null to start a new one
+     * @return the outcome of the import with its throughput
+     * @throws Exception if unable to read the entries or write to the database, the import can be resumed with
+     *                   the id given in the message
+     */
+    public CatalogImport importCatalog(Iterator<JsonNode> entries, String importId) {
+        String id = importId != null ? importId : UUID.randomUUID().toString();
+        long skip = loadCheckpoint(id);
+        ImportProgress progress = new ImportProgress(id, skip);
+
+        /* Every writer may have two batches pending, reading waits beyond that */
+        int permits = parallelism * 2;
+        Semaphore pending = new Semaphore(permits);
+
+        long started = System.currentTimeMillis();
+        long position = 0;
+        long batchStart = skip;
+        long invalid = 0;
+        List<Product> batch = new ArrayList<>(batchSize);
+        InvalidRequestException unreadable = null;
+
+        logger.info("Importing catalog {} from entry {}...", id, skip);
+        try {
+            while (progress.failure == null && entries.hasNext()) {
+                JsonNode entry = entries.next();
+                position++;
+
+                /* Written by an earlier run of this import */
+                if (position <= skip) {
+                    continue;
+                }
+
+                Product product = toProduct(entry);
+                if (product == null) {
+                    invalid++;
+                } else {
+                    batch.add(product);
+                }
+
+                if (batch.size() == batchSize) {
+                    write(batch, batchStart, position, progress, pending);
+                    batch = new ArrayList<>(batchSize);
+                    batchStart = position;
+                }
+            }
+
+            if (position > batchStart) {
+                write(batch, batchStart, position, progress, pending);
+            }
+        } catch (InvalidRequestException ex) {
+            unreadable = ex;
+        } finally {
+            /* Wait for the pending batches */
+            pending.acquireUninterruptibly(permits);
+        }
+
+        if (progress.failure != null) {
+            throw new ServerException("Catalog import %s stopped after %d entries, resume it with the same import id",
+                    id, progress.committed);
+        }
+        if (unreadable != null) {
+            throw new InvalidRequestException("Catalog import %s stopped after %d entries, resume it with the same import id - %s",
+                    id, progress.committed, unreadable.getMessage());
+        }
+
+        CatalogImport result = new CatalogImport(id, skip, progress.imported, invalid, System.currentTimeMillis() - started);
+        logger.info("Imported {} products of catalog {} at {} products per second, {} invalid",
+                result.getImported(), id, result.getProductsPerSecond(), invalid);
+        return result;
+    }
+
+    /**
+     * Hands a batch to the writers, waiting while too many batches are pending
+     *
+     * @param products - products of the batch
+     * @param from     - position of the last entry before the batch
+     * @param to       - position of the last entry of the batch
+     */
+    private void write(List<Product> products, long from, long to, ImportProgress progress, Semaphore pending) {
+        pending.acquireUninterruptibly();
+        try {
+            writers.execute(() -> {
+                try {
+                    if (!products.isEmpty()) {
+                        priceRepository.upsertProducts(products);
+                        List<Integer> ids = products.stream().map(Product::getId).collect(Collectors.toList());
+                        productCaches.evictPrices(ids);
+                        productCaches.evictMissing(ids);
+                        if (knownProductIds != null) {
+                            knownProductIds.addAll(ids);
+                        }
+                        importedProducts.increment(products.size());
+                    }
+                    progress.completed(from, to, products.size());
+                } catch (RuntimeException ex) {
+                    logger.error("Unable to write entries {} to {} of catalog {} - {}", from + 1, to, progress.importId, ex.getMessage());
+                    progress.failure = ex;
+                } finally {
+                    pending.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.error("Unable to write entries {} to {} of catalog {} - {}", from + 1, to, progress.importId, ex.getMessage());
+            /* Shutting down, give the permit back so the import is not left waiting for it */
+            pending.release();
+            progress.failure = ex;
+        }
+    }
+
+    /**
+     * Reads a catalog entry in the shape of sample-data.json
+     *
+     * @param entry - the catalog entry
+     * @return the product or null if the entry has no valid id or price
+     */
+    private Product toProduct(JsonNode entry) {
+        JsonNode id = entry.path("_id");
+        JsonNode price = entry.path("current_price");
+        if (!id.isIntegralNumber() || !id.canConvertToInt()
+                || !price.path("value").isNumber() || !price.path("currency_code").isTextual()) {
+            return null;
+        }
+        try {
+            return new Product(id.intValue(), entry.path("name").textValue(),
+                    new Price(price.get("value").doubleValue(), price.get("currency_code").textValue()));
+        } catch (IllegalArgumentException | InvalidRequestException ex) {
+            /* Not a finite value, out of range or not a currency code */
+            return null;
+        }
+    }
+
+    private long loadCheckpoint(String importId) {
+        try {
+            Document checkpoint = mongoTemplate.findById(importId, Document.class, CHECKPOINTS);
+            return checkpoint == null ? 0 : ((Number) checkpoint.get("committed")).longValue();
+        } catch (DataAccessException ex) {
+            throw new ServerException("Unable to load the checkpoint of catalog import %s - %s", importId, ex.getMessage());
+        }
+    }
+
+    private void saveCheckpoint(String importId, long committed) {
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(importId)),
+                    Update.update("committed", committed).set("updated", new Date()), CHECKPOINTS);
+        } catch (DataAccessException ex) {
+            logger.error("Unable to save the checkpoint of catalog import {} - {}", importId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Exports the catalog in the shape of sample-data.json, streaming the products from a cursor
+     *
+     * @param out    - where the catalog is written to
+     * @param ndjson - write newline delimited JSON instead of a JSON array
+     * @return the number of products exported
+     * @throws IOException if unable to write the catalog
+     */
+    public long exportCatalog(OutputStream out, boolean ndjson) throws IOException {
+        long exported = 0;
+        Query query = new Query().with(Sort.by("_id")).cursorBatchSize(batchSize);
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(out);
+             CloseableIterator<Product> products = mongoTemplate.stream(query, Product.class)) {
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+
+            while (products.hasNext()) {
+                writeProduct(generator, products.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                exported++;
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+
+        logger.info("Exported {} products", exported);
+        return exported;
+    }
+
+    private void writeProduct(JsonGenerator generator, Product product) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("_id", product.getId());
+        generator.writeStringField("name", product.getName());
+        if (product.getPrice() != null) {
+            generator.writeObjectFieldStart("current_price");
+            generator.writeNumberField("value", product.getPrice().getValue());
+            generator.writeStringField("currency_code", product.getPrice().getCurrencyCode());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Tracks the batches of an import that were written. Batches complete out of order, the
+     * checkpoint only moves over batches that were all written
+     */
+    private class ImportProgress {
+
+        private final String importId;
+
+        /* Completed batches that are not yet contiguous with the committed ones, by start position */
+        private final TreeMap<Long, Long> completed = new TreeMap<>();
+
+        private long committed;
+
+        private long imported;
+
+        private volatile RuntimeException failure;
+
+        ImportProgress(String importId, long committed) {
+            this.importId = importId;
+            this.committed = committed;
+        }
+
+        synchronized void completed(long from, long to, int products) {
+            imported += products;
+            completed.put(from, to);
+
+            long checkpoint = committed;
+            while (completed.containsKey(committed)) {
+                committed = completed.remove(committed);
+            }
+            if (committed != checkpoint) {
+                saveCheckpoint(importId, committed);
+            }
+        }
+    }
+}
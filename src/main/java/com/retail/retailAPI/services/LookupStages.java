@@ -0,0 +1,78 @@
+package com.retail.retailAPI.services;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Times every stage of the product lookup and traces it as a span of the request. Stages are
+ * price (local repo), name (redsky), parse (reading the redsky response) and total (the whole
+ * aggregation). Timings are recorded by the product.lookup timer tagged with the stage, spans are
+ * named product.{stage} and only recorded when tracing is enabled
+ */
+@Component
+public class LookupStages {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    Tracing tracing;
+
+    /**
+     * Runs one stage of the lookup in its own span and times it
+     *
+     * @param stage - name of the stage
+     * @param work  - the stage
+     * @return the result of the stage
+     */
+    public <T> T record(String stage, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        if (tracing == null) {
+            try {
+                return work.get();
+            } finally {
+                sample.stop(timer(stage));
+            }
+        }
+
+        Tracer tracer = tracing.tracer();
+        Span span = tracer.nextSpan().name("product." + stage).start();
+        try (Tracer.SpanInScope scope = tracer.withSpanInScope(span)) {
+            return work.get();
+        } catch (RuntimeException ex) {
+            span.error(ex);
+            throw ex;
+        } finally {
+            sample.stop(timer(stage));
+            span.finish();
+        }
+    }
+
+    /**
+     * Timer for one stage of the product lookup
+     *
+     * @param stage - name of the stage
+     * @return the timer of the stage
+     */
+    public Timer timer(String stage) {
+        return meterRegistry.timer("product.lookup", "stage", stage);
+    }
+
+    /**
+     * Carries the span of the submitting request over to the tasks of an executor
+     *
+     * @param executor - executor running parts of the lookup
+     * @return the executor, wrapped when tracing is enabled
+     */
+    public ExecutorService traced(ExecutorService executor) {
+        return tracing == null ? executor : tracing.currentTraceContext().executorService(executor);
+    }
+}
@@ -0,0 +1,233 @@
+package com.retail.retailAPI.services;
+
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.cache.SingleFlight;
+import com.retail.retailAPI.config.AppConfig;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.repositories.PriceRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets product names from redsky. Names are cached, concurrent loads of the same name are shared
+ * and calls go through a bulkhead that caps concurrent redsky calls and a circuit breaker that
+ * fails fast while redsky is failing. Every name loaded from redsky is also stored with the product
+ * so it can be served as the last known name during an outage
+ */
+@Service
+public class ProductNameService {
+
+    private static Logger logger = LoggerFactory.getLogger(ProductNameService.class);
+
+    @Autowired
+    RestTemplate restTemplate;
+
+    @Autowired
+    AppConfig appConfig;
+
+    @Autowired
+    RedskyResponseParser redskyResponseParser;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    @Autowired
+    PriceRepository priceRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    LookupStages lookupStages;
+
+    @Autowired
+    CircuitBreaker redskyCircuitBreaker;
+
+    @Autowired
+    Bulkhead redskyBulkhead;
+
+    /* Share in flight loads between concurrent cache misses for the same id */
+    private SingleFlight<Integer, String> nameLoads;
+
+    /* Stores names with the products off the request path, dropping them when it falls behind */
+    private ThreadPoolExecutor nameWriter;
+
+    @PostConstruct
+    public void init() {
+        nameLoads = new SingleFlight<>(meterRegistry.counter("product.load.coalesced", "load", "name"));
+        nameWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                new CustomizableThreadFactory("name-writer-"), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        nameWriter.shutdown();
+    }
+
+    /**
+     * Gets the product name from the names cache, calling redsky only when it is not cached.
+     * Names rarely change, so they are cached separately and for longer than prices
+     *
+     * @param id ProductId
+     * @return product name
+     * @throws ServerException if redsky is unavailable
+     */
+    public String getName(int id) {
+        return findName(id).orElseThrow(() -> new ProductNotFoundException("Unable to find product in redsky API"));
+    }
+
+    /**
+     * Gets the product name like {@link #getName(int)}, returning an empty name when redsky
+     * does not have the product instead of throwing
+     *
+     * @param id ProductId
+     * @return product name or empty if redsky does not have the product
+     * @throws ServerException if redsky is unavailable
+     */
+    public Optional<String> findName(int id) {
+        String cachedName = productCaches.getName(id);
+        if (cachedName != null) {
+            return Optional.of(cachedName);
+        }
+
+        return Optional.ofNullable(loadName(id));
+    }
+
+    /**
+     * Loads the product name from redsky whether or not it is cached, replacing the cached name.
+     * Used to refresh hot names before they expire
+     *
+     * @param id ProductId
+     * @return product name
+     * @throws ServerException if redsky is unavailable
+     */
+    public String refreshName(int id) {
+        String productName = loadName(id);
+        if (productName == null) {
+            throw new ProductNotFoundException("Unable to find product in redsky API");
+        }
+        return productName;
+    }
+
+    /**
+     * Loads the product name from redsky, caching and storing it when redsky has the product
+     *
+     * @param id ProductId
+     * @return product name or null if redsky does not have the product
+     */
+    private String loadName(int id) {
+        return nameLoads.execute(id, () -> {
+            String productName = fetchName(id);
+            if (productName == null) {
+                return null;
+            }
+            productCaches.putName(id, productName);
+            storeName(id, productName);
+            return productName;
+        });
+    }
+
+    /**
+     * Calls redsky through the bulkhead and the circuit breaker. Calls rejected by either of them
+     * fail straight away without touching the network
+     *
+     * @param id ProductId
+     * @return product name
+     */
+    private String fetchName(int id) {
+        try {
+            return redskyBulkhead.executeSupplier(() -> redskyCircuitBreaker.executeSupplier(() -> callRedsky(id)));
+        } catch (BulkheadFullException ex) {
+            throw new ServerException("Too many concurrent calls to the provided API");
+        } catch (CallNotPermittedException ex) {
+            throw new ServerException("The provided API is unavailable");
+        }
+    }
+
+    /**
+     * This method calls the external Rest API to get the product details and then converting
+     * the JSON String to get the product name
+     *
+     * @param id ProductId
+     * @return product name
+     * @throws Exception if unable to find the product in the database
+     */
+    private String callRedsky(int id) {
+        logger.debug("Getting product name for {} from redsky API...", id);
+
+        return lookupStages.record("name", () -> {
+            try {
+                /* Get the URI for the given id */
+                URI uri = UriComponentsBuilder.fromHttpUrl(appConfig.getRestURL())
+                        .buildAndExpand(id).toUri();
+
+                /* Call redsky api, parsing the name straight from the response stream */
+                return restTemplate.execute(uri, HttpMethod.GET,
+                        request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                        this::parseName);
+            } catch (NullPointerException | IllegalArgumentException ex) {
+                throw new ServerException("Unable to create the URI for ID - %d", id);
+            } catch (RestClientException ex) {
+                throw new ServerException("Unable to access the provided API");
+            }
+        });
+    }
+
+    /**
+     * Parses the product name out of the redsky response. The body is read as it is parsed,
+     * so the parse stage includes reading the body from the network
+     *
+     * @param response - the redsky response
+     * @return product name or null if the response does not have one
+     */
+    private String parseName(ClientHttpResponse response) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return redskyResponseParser.findName(response.getBody());
+        } finally {
+            sample.stop(lookupStages.timer("parse"));
+        }
+    }
+
+    /**
+     * Stores the name with the product as its last known name
+     *
+     * @param id   ProductId
+     * @param name product name
+     */
+    private void storeName(int id, String name) {
+        nameWriter.execute(() -> {
+            try {
+                priceRepository.updateName(id, name);
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to store the name of product {} - {}", id, ex.getMessage());
+            }
+        });
+    }
+}
@@ -1,90 +1,360 @@
 package com.retail.retailAPI.services;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.retailAPI.cache.KnownProductIds;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.cache.SingleFlight;
 import com.retail.retailAPI.config.AppConfig;
 import com.retail.retailAPI.exceptions.ProductNotFoundException;
 import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.PriceUpdate;
+import com.retail.retailAPI.models.PriceUpdateBatch;
 import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductBatch;
+import com.retail.retailAPI.models.ProductLookup;
 import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
-import java.net.URI;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 @Service
 public class ProductService {
 
     private static Logger logger = LoggerFactory.getLogger(ProductService.class);
 
+    /* Logs at most one stale name a second during a redsky outage */
+    private static RateLimitedLog staleLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
     @Autowired
     PriceRepository priceRepository;
 
     @Autowired
-    RestTemplate restTemplate;
+    AppConfig appConfig;
 
     @Autowired
-    AppConfig appConfig;
+    ProductCaches productCaches;
+
+    @Autowired
+    ProductNameService productNameService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    LookupStages lookupStages;
+
+    /* Only present when cache.known-ids.enabled is set */
+    @Autowired(required = false)
+    KnownProductIds knownProductIds;
+
+    /* Bounds the number of concurrent calls to redsky */
+    private ExecutorService redskyExecutor;
+
+    /* Share in flight loads between concurrent cache misses for the same id */
+    private SingleFlight<Integer, Optional<Product>> priceLoads;
+
+    @PostConstruct
+    public void init() {
+        redskyExecutor = lookupStages.traced(Executors.newFixedThreadPool(appConfig.getRedskyConcurrency(),
+                new CustomizableThreadFactory("redsky-")));
+        priceLoads = new SingleFlight<>(meterRegistry.counter("product.load.coalesced", "load", "price"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        redskyExecutor.shutdownNow();
+    }
 
     /**
-     * Gets the product by id from local repo, aggregates with name and returns the product
+     * Gets the product by id from local repo, aggregates with name and returns the product.
+     * The product is built from the cached price and the cached name, so only the missing
+     * pieces are loaded
      * @param id ProductId
      * @return Optional product instance
      * @throws Exception
      */
-    @Cacheable("products")
     public Optional<Product> getProduct(int id) {
+        ProductLookup lookup = lookupProduct(id);
+        if (!lookup.isFound()) {
+            throw new ProductNotFoundException(lookup.getMessage());
+        }
+        return Optional.of(lookup.getProduct());
+    }
 
-        /* Retrieve product from local repo */
-        Optional<Product> product = retrieveProduct(id);
+    /**
+     * Looks the product up like {@link #getProduct(int)}, returning a product that does not exist
+     * locally or in redsky as a not found lookup instead of throwing. Not found lookups are cached
+     * briefly, apart from the products, and evicted when the product is written
+     *
+     * @param id ProductId
+     * @return the product or the reason it was not found
+     * @throws ServerException if the product cannot be retrieved
+     */
+    public ProductLookup lookupProduct(int id) {
+        return lookupStages.record("total", () -> {
+            ProductLookup missing = findMissing(id);
+            if (missing != null) {
+                return missing;
+            }
+
+            ProductLookup lookup = appConfig.isConcurrentLookup() ? aggregateConcurrently(id) : aggregate(id);
+            if (!lookup.isFound()) {
+                productCaches.putMissing(lookup);
+            }
+            return lookup;
+        });
+    }
+
+    /**
+     * Tells whether the product is known not to exist without any I/O, either because the known
+     * ids filter has never seen it or because it was recently looked up and not found
+     *
+     * @param id ProductId
+     * @return the not found lookup or null if the product may exist
+     */
+    private ProductLookup findMissing(int id) {
+        if (knownProductIds != null && !knownProductIds.mightContain(id)) {
+            return ProductLookup.notFound(id);
+        }
+        return productCaches.getMissing(id);
+    }
+
+    /**
+     * Gets the product price and then its name
+     *
+     * @param id ProductId
+     * @return the product lookup
+     */
+    private ProductLookup aggregate(int id) {
+
+        /* Get product price */
+        Optional<Product> product = getPricedProduct(id);
 
         if (product.isEmpty()) {
-            throw new ProductNotFoundException("Unable to find the item for ID - %d", id);
+            return ProductLookup.notFound(id);
         }
 
-        /* Get product name */
-        String productName = getProductName(id);
+        /* Get product name and aggregate */
+        return aggregateName(product.get(), () -> productNameService.findName(id).orElse(null));
+    }
+
+    /**
+     * Starts getting the product name from redsky while the product price is retrieved, so the
+     * lookup takes as long as the slower of the two calls. The name lookup is cancelled when the
+     * product does not exist
+     *
+     * @param id ProductId
+     * @return the product lookup
+     */
+    private ProductLookup aggregateConcurrently(int id) {
+
+        /* Start getting product name unless it is cached */
+        String cachedName = productCaches.getName(id);
+        Future<String> productName = cachedName != null
+                ? CompletableFuture.completedFuture(cachedName)
+                : redskyExecutor.submit(() -> productNameService.findName(id).orElse(null));
+
+        /* Get product price */
+        Optional<Product> product;
+        try {
+            product = getPricedProduct(id);
+        } catch (RuntimeException ex) {
+            productName.cancel(true);
+            throw ex;
+        }
+
+        if (product.isEmpty()) {
+            productName.cancel(true);
+            return ProductLookup.notFound(id);
+        }
 
         /* Aggregate name */
-        product.get().setName(productName);
+        return aggregateName(product.get(), () -> awaitProductName(productName));
+    }
 
-        return product;
+    /**
+     * Aggregates the product name. When redsky is unavailable the last known name stored with the
+     * product is used instead and the product is marked as stale
+     *
+     * @param product     the product, holding its stored name if it was retrieved from local repo
+     * @param productName gets the product name, or null if redsky does not have the product
+     * @return the product lookup, not found if redsky does not have the product
+     */
+    private ProductLookup aggregateName(Product product, Supplier<String> productName) {
+        String name;
+        try {
+            name = productName.get();
+        } catch (ServerException ex) {
+            String lastKnownName = product.getName() != null
+                    ? product.getName()
+                    : retrieveProduct(product.getId()).map(Product::getName).orElse(null);
+            if (lastKnownName == null) {
+                throw ex;
+            }
+
+            staleLog.warn("Serving last known name for product {} - {}", product.getId(), ex.getMessage());
+            meterRegistry.counter("product.name.stale").increment();
+            product.setName(lastKnownName);
+            product.setStale(true);
+            return ProductLookup.found(product);
+        }
+
+        if (name == null) {
+            return ProductLookup.nameNotFound(product.getId());
+        }
+        product.setName(name);
+        return ProductLookup.found(product);
     }
 
     /**
-     * This method calls the external Rest API to get the product details and then converting
-     * the JSON String to get the product name
+     * Waits for a product name lookup started on the redsky executor and rethrows its failure
      *
-     * @param id ProductId
+     * @param productName the pending name lookup
      * @return product name
-     * @throws Exception if unable to find the product in the database
      */
-    private String getProductName(int id) {
-        logger.info("Getting product name from redsky API...");
-
+    private String awaitProductName(Future<String> productName) {
         try {
-            /* Get the URI for the given id */
-            URI uri = UriComponentsBuilder.fromHttpUrl(appConfig.getRestURL())
-                    .buildAndExpand(id).toUri();
-
-            /* Call redsky api */
-            String response = restTemplate.getForObject(uri, String.class);
-
-            /* Parse and return name */
-            return getName(response);
-        } catch (NullPointerException | IllegalArgumentException ex) {
-            throw new ServerException("Unable to create the URI for ID - %d", id);
-        } catch (RestClientException ex) {
+            return productName.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
             throw new ServerException("Unable to access the provided API");
+        } catch (InterruptedException ex) {
+            productName.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServerException("Interrupted while retrieving the product name");
+        }
+    }
+
+    /**
+     * Gets a batch of products. Cached prices and names are served from their caches, missing
+     * prices are loaded from local repo with a single query and missing names are fetched from
+     * redsky concurrently. Ids that fail are reported individually instead of failing the batch
+     *
+     * @param ids ProductIds
+     * @return the products that were found along with an error message for every id that failed
+     */
+    public ProductBatch getProducts(Collection<Integer> ids) {
+        Map<Integer, Product> found = new HashMap<>();
+        Map<Integer, String> errors = new LinkedHashMap<>();
+        Collection<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        List<Integer> misses = new ArrayList<>();
+
+        /* Serve what we can from the prices cache */
+        for (Integer id : uniqueIds) {
+            ProductLookup missing = findMissing(id);
+            if (missing != null) {
+                errors.put(id, missing.getMessage());
+                continue;
+            }
+
+            Cache.ValueWrapper cachedPrice = productCaches.getPrice(id);
+            if (cachedPrice != null) {
+                found.put(id, new Product(id, null, (Price) cachedPrice.get()));
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            /* Retrieve all the missing products from local repo at once */
+            for (Product product : retrieveProducts(misses)) {
+                productCaches.putPriceIfNewer(product.getId(), product.getPrice());
+                found.put(product.getId(), product);
+            }
+
+            for (Integer id : misses) {
+                if (!found.containsKey(id)) {
+                    ProductLookup missing = ProductLookup.notFound(id);
+                    productCaches.putMissing(missing);
+                    errors.put(id, missing.getMessage());
+                }
+            }
+        }
+
+        /* Get the product names that are not cached concurrently */
+        Map<Integer, Future<String>> names = new LinkedHashMap<>();
+        for (Product product : found.values()) {
+            int id = product.getId();
+            String cachedName = productCaches.getName(id);
+            if (cachedName != null) {
+                product.setName(cachedName);
+            } else {
+                names.put(id, redskyExecutor.submit(() -> productNameService.findName(id).orElse(null)));
+            }
+        }
+
+        /* Aggregate names */
+        for (Map.Entry<Integer, Future<String>> name : names.entrySet()) {
+            Integer id = name.getKey();
+            try {
+                ProductLookup lookup = aggregateName(found.get(id), () -> awaitProductName(name.getValue()));
+                if (!lookup.isFound()) {
+                    productCaches.putMissing(lookup);
+                    found.remove(id);
+                    errors.put(id, lookup.getMessage());
+                }
+            } catch (ServerException ex) {
+                found.remove(id);
+                errors.put(id, ex.getMessage());
+            }
+        }
+
+        List<Product> products = new ArrayList<>();
+        for (Integer id : uniqueIds) {
+            if (found.containsKey(id)) {
+                products.add(found.get(id));
+            }
+        }
+        return new ProductBatch(products, errors);
+    }
+
+    /**
+     * Gets the product price from the prices cache, retrieving the product from local repo
+     * when it is not cached. Concurrent misses for the same id share a single retrieval
+     *
+     * @param id Product ID
+     * @return An Optional product instance holding the price but no name
+     */
+    private Optional<Product> getPricedProduct(int id) {
+        Cache.ValueWrapper cachedPrice = productCaches.getPrice(id);
+        if (cachedPrice != null) {
+            return Optional.of(new Product(id, null, (Price) cachedPrice.get()));
         }
+
+        Optional<Product> product = priceLoads.execute(id, () -> {
+            Optional<Product> stored = retrieveProduct(id);
+            stored.ifPresent(found -> productCaches.putPriceIfNewer(id, found.getPrice()));
+            return stored;
+        });
+
+        /* Every caller gets its own copy as the product is aggregated afterwards */
+        return product.map(stored -> new Product(id, stored.getName(), stored.getPrice()));
     }
 
     /**
@@ -95,74 +365,172 @@ public class ProductService {
      * @throws Exception in case of any issues while retrieving item from repository
      */
     private Optional<Product> retrieveProduct(int id) {
-        logger.info("Retrieving information for product id {}...", id);
+        logger.debug("Retrieving information for product id {}...", id);
 
-        try {
-            return priceRepository.findById(id);
-        } catch (IllegalArgumentException ex) {
-            logger.error("Unable to find the product in the database");
-            throw new ServerException("Product cannot be retrieve with given ID - %d", id);
-        }
+        return lookupStages.record("price", () -> {
+            try {
+                return priceRepository.findPrice(id);
+            } catch (IllegalArgumentException ex) {
+                logger.error("Unable to find the product in the database");
+                throw new ServerException("Product cannot be retrieve with given ID - %d", id);
+            }
+        });
     }
 
     /**
-     * This method is responsible for extracting the product name from the JSON String
-     * that we received from the HTTP GET call
+     * Gets the product details for a number of ids from the database in a single query
      *
-     * @param response - Response from external API
-     * @return name of the product
-     * @throws Exception if unable to parse the response
+     * @param ids Product IDs
+     * @return the products that exist in the database
+     * @throws Exception in case of any issues while retrieving items from repository
      */
-    private String getName(String response) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(response);
-            JsonNode productName = node.path("product").path("item").path("product_description").path("title");
+    private List<Product> retrieveProducts(Collection<Integer> ids) {
+        logger.debug("Retrieving information for {} products...", ids.size());
 
-            if(productName.isMissingNode())
-                throw new ProductNotFoundException("Unable to find product in redsky API");
-
-            return productName.asText();
-        } catch (IOException ex) {
-            logger.error("Unable to parse the Json String");
-            throw new ServerException("Unable to Parse the response the external API");
+        try {
+            return priceRepository.findPrices(ids);
+        } catch (IllegalArgumentException ex) {
+            logger.error("Unable to find the products in the database");
+            throw new ServerException("Products cannot be retrieved with the given IDs");
         }
     }
 
-
     /**
      * This method is responsible for updating the product price in the database
-     * by accessing the repository
+     * by accessing the repository. The new price is written through to the prices
+     * cache while the cached name is kept
      *
      * @param id      - ProductId
      * @param product - Product instance
      * @return Optional product instance
      * @throws Exception if unable to find the product in the database
      */
-    @CachePut(value = "products", key = "#id")
     public Optional<Product> updateProduct(int id, Product product) {
+        return updateProduct(id, product, null);
+    }
 
-        /* Get product from local repo */
-        Optional<Product> productInDatabase = retrieveProduct(id);
+    /**
+     * Updates the product price with a single atomic update that returns the updated product,
+     * so the product is not read before it is written. With an expected version the update
+     * only applies while the price is still at that version
+     *
+     * @param id              - ProductId
+     * @param product         - Product instance
+     * @param expectedVersion - version the price must be at, or null to update whatever the version
+     * @return Optional product instance
+     * @throws Exception if unable to find the product in the database or its price is at another version
+     */
+    public Optional<Product> updateProduct(int id, Product product, Long expectedVersion) {
+        Product updatedProduct;
+        try {
+            logger.debug("Saving product with id {} ...", id);
+            updatedProduct = priceRepository.updatePrice(id, product.getPrice(), expectedVersion);
+        } catch (DataAccessException | IllegalArgumentException ex) {
+            throw new ServerException("Unable to save product price for id - %d", id);
+        }
 
-        /* Check if product exists */
-        if (productInDatabase.isEmpty()) {
+        /* Only a failed update reads the product, to tell a missing product from a changed price */
+        if (updatedProduct == null) {
+            if (expectedVersion != null && priceRepository.existsById(id)) {
+                logger.error("Product {} was updated since version {}", id, expectedVersion);
+                throw new VersionConflictException("Product price was updated since version %d for id - %d", expectedVersion, id);
+            }
             logger.error("Unable to find the product in the database");
             throw new ProductNotFoundException("Unable to find the product to update with Id - %d", id);
         }
 
-        /* Update and save */
-        productInDatabase.get().setPrice(product.getPrice());
+        productCaches.putPrice(id, updatedProduct.getPrice());
+        productCaches.evictMissing(id);
 
-        try {
-            logger.info("Saving product with id {} ...", id);
-            priceRepository.save(productInDatabase.get());
-        } catch (IllegalArgumentException ex) {
-            throw new ServerException("Unable to save product price for id - {}", id);
+        /* Aggregate the cached name, if any */
+        String cachedName = productCaches.getName(id);
+        if (cachedName != null) {
+            updatedProduct.setName(cachedName);
         }
 
-        return productInDatabase;
+        return Optional.of(updatedProduct);
     }
-}
 
+    /**
+     * Updates the prices of many products. The updates are written to the database in batches
+     * of unordered bulk writes that set the current price without reading the products first,
+     * and the new versions of the prices are written through to the prices cache. Invalid updates and products
+     * that do not exist are reported individually instead of failing the whole update
+     *
+     * @param updates - the price updates, consumed as they are written
+     * @return the number of products updated along with an error message for every id that was not
+     * @throws Exception if unable to write the prices to the database, batches written before stay updated
+     */
+    public PriceUpdateBatch updatePrices(Iterator<PriceUpdate> updates) {
+        Map<Integer, String> errors = new LinkedHashMap<>();
+        Map<Integer, Price> batch = new LinkedHashMap<>();
+        int updated = 0;
+
+        while (updates.hasNext()) {
+            PriceUpdate update = updates.next();
+
+            /* Is the price update valid? */
+            String invalid = validatePriceUpdate(update);
+            if (invalid != null) {
+                errors.put(update.getId(), invalid);
+                continue;
+            }
+
+            batch.put(update.getId(), update.getPrice());
+            if (batch.size() >= appConfig.getBatchUpdateSize()) {
+                updated += writePrices(batch, errors);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            updated += writePrices(batch, errors);
+        }
+
+        logger.info("Updated prices of {} products, {} failed", updated, errors.size());
+        return new PriceUpdateBatch(updated, errors);
+    }
 
+    private String validatePriceUpdate(PriceUpdate update) {
+        if (update.getId() <= 0) {
+            return "Product id is required";
+        }
+        if (update.getPrice() == null) {
+            return "Product price cannot be null";
+        }
+        if (update.getPrice().getUnits() <= 0 || update.getPrice().getCurrencyCode() == null) {
+            return "Product price must have a positive value and a currency code";
+        }
+        return null;
+    }
+
+    /**
+     * Writes one batch of prices with a single bulk write and caches the prices as they are stored
+     * after it, unless a later version was cached meanwhile
+     *
+     * @param prices - new price by productId
+     * @param errors - collects an error for every product that does not exist
+     * @return the number of products updated
+     */
+    private int writePrices(Map<Integer, Price> prices, Map<Integer, String> errors) {
+        Map<Integer, Price> stored;
+        try {
+            stored = priceRepository.updatePrices(prices);
+        } catch (DataAccessException ex) {
+            logger.error("Unable to save a batch of {} product prices", prices.size());
+            throw new ServerException("Unable to save the prices of a batch of %d products", prices.size());
+        }
+
+        for (Integer id : prices.keySet()) {
+            if (!stored.containsKey(id)) {
+                errors.put(id, String.format("Unable to find the product to update with Id - %d", id));
+            }
+        }
+
+        for (Map.Entry<Integer, Price> price : stored.entrySet()) {
+            productCaches.putPriceIfNewer(price.getKey(), price.getValue());
+        }
+        productCaches.evictMissing(stored.keySet());
+        return stored.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.retail.retailAPI.services;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs at most one message per interval, for messages on the request path that would otherwise
+ * be logged for every request when a client keeps asking for products that do not exist or a
+ * dependency is down. Messages dropped in between are counted and reported with the next one
+ */
+public class RateLimitedLog {
+
+    private final Logger logger;
+
+    private final long intervalNanos;
+
+    private final AtomicLong nextLog;
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * @param logger   - logger the messages are written to
+     * @param interval - minimum time between two messages
+     */
+    public RateLimitedLog(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+        this.nextLog = new AtomicLong(System.nanoTime());
+    }
+
+    public void warn(String format, Object... args) {
+        if (logger.isWarnEnabled()) {
+            long dropped = permit();
+            if (dropped >= 0) {
+                logger.warn(format + " ({} similar messages suppressed)", withSuppressed(args, dropped));
+            }
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (logger.isErrorEnabled()) {
+            long dropped = permit();
+            if (dropped >= 0) {
+                logger.error(format + " ({} similar messages suppressed)", withSuppressed(args, dropped));
+            }
+        }
+    }
+
+    /**
+     * Lets a single caller per interval through
+     *
+     * @return the number of messages suppressed since the last one, or -1 if this one is suppressed too
+     */
+    private long permit() {
+        long now = System.nanoTime();
+        long next = nextLog.get();
+        if (now - next < 0 || !nextLog.compareAndSet(next, now + intervalNanos)) {
+            suppressed.incrementAndGet();
+            return -1;
+        }
+        return suppressed.getAndSet(0);
+    }
+
+    private static Object[] withSuppressed(Object[] args, long dropped) {
+        Object[] all = Arrays.copyOf(args, args.length + 1);
+        all[args.length] = dropped;
+        return all;
+    }
+}
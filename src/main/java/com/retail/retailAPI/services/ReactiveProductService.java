@@ -0,0 +1,156 @@
+package com.retail.retailAPI.services;
+
+import com.retail.retailAPI.config.AppConfig;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.repositories.ReactivePriceRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking counterpart of {@link ProductService} used when the application runs on the reactive web stack.
+ * Redsky calls go through the same bulkhead and circuit breaker as the blocking calls, and the last known
+ * name is served when redsky is unavailable
+ */
+@Service
+public class ReactiveProductService {
+
+    private static Logger logger = LoggerFactory.getLogger(ReactiveProductService.class);
+
+    /* Logs at most one stale name a second during a redsky outage */
+    private static RateLimitedLog staleLog = new RateLimitedLog(logger, Duration.ofSeconds(1));
+
+    @Autowired
+    ReactivePriceRepository reactivePriceRepository;
+
+    @Autowired
+    WebClient webClient;
+
+    @Autowired
+    AppConfig appConfig;
+
+    @Autowired
+    RedskyResponseParser redskyResponseParser;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    CircuitBreaker redskyCircuitBreaker;
+
+    @Autowired
+    Bulkhead redskyBulkhead;
+
+    /**
+     * Gets the product by id from local repo and its name from redsky at the same time,
+     * aggregates them and returns the product. If the product does not exist the redsky
+     * call is cancelled. When redsky is unavailable the last known name stored with the
+     * product is served and the product is marked as stale
+     *
+     * @param id ProductId
+     * @return the product, or an error signal with ProductNotFoundException or ServerException
+     */
+    public Mono<Product> getProduct(int id) {
+
+        /* Retrieve product from local repo */
+        Mono<Product> product = reactivePriceRepository.findPrice(id)
+                .onErrorMap(IllegalArgumentException.class,
+                        ex -> new ServerException("Product cannot be retrieve with given ID - %d", id))
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new ProductNotFoundException("Unable to find the item for ID - %d", id))));
+
+        /* Aggregate name, the failure of the redsky call is kept to fall back to the stored name */
+        return Mono.zip(product, getProductName(id).materialize(), this::aggregateName);
+    }
+
+    /**
+     * Aggregates the product name, or the last known name stored with the product when redsky is unavailable
+     *
+     * @param product     the product, holding its stored name
+     * @param productName the outcome of the redsky call
+     * @return the product
+     */
+    private Product aggregateName(Product product, Signal<String> productName) {
+        if (productName.isOnNext()) {
+            product.setName(productName.get());
+            return product;
+        }
+
+        Throwable ex = productName.getThrowable();
+        if (ex instanceof ServerException && product.getName() != null) {
+            staleLog.warn("Serving last known name for product {} - {}", product.getId(), ex.getMessage());
+            meterRegistry.counter("product.name.stale").increment();
+            product.setStale(true);
+            return product;
+        }
+        throw ex instanceof RuntimeException ? (RuntimeException) ex : new ServerException("Unable to access the provided API");
+    }
+
+    /**
+     * This method calls the external Rest API to get the product details and then parses the
+     * product name from the response body as it streams in. Calls rejected by the bulkhead or the circuit
+     * breaker fail straight away without touching the network
+     *
+     * @param id ProductId
+     * @return product name
+     */
+    private Mono<String> getProductName(int id) {
+        logger.debug("Getting product name from redsky API...");
+
+        return Mono.fromCallable(() -> UriComponentsBuilder.fromHttpUrl(appConfig.getRestURL())
+                        .buildAndExpand(id).toUri())
+                .onErrorMap(ex -> ex instanceof NullPointerException || ex instanceof IllegalArgumentException,
+                        ex -> new ServerException("Unable to create the URI for ID - %d", id))
+                /* The body is parsed buffer by buffer as it arrives, it is never joined into a String */
+                .flatMap(uri -> redskyResponseParser.getName(
+                        webClient.get().uri(uri).retrieve().bodyToFlux(DataBuffer.class)))
+                .onErrorMap(WebClientException.class, ex -> new ServerException("Unable to access the provided API"))
+                .transformDeferred(CircuitBreakerOperator.of(redskyCircuitBreaker))
+                .transformDeferred(BulkheadOperator.of(redskyBulkhead))
+                .onErrorMap(BulkheadFullException.class, ex -> new ServerException("Too many concurrent calls to the provided API"))
+                .onErrorMap(CallNotPermittedException.class, ex -> new ServerException("The provided API is unavailable"));
+    }
+
+    /**
+     * This method is responsible for updating the product price in the database
+     * with a single atomic update, optionally only while the price is at an expected version
+     *
+     * @param id              - ProductId
+     * @param product         - Product instance
+     * @param expectedVersion - version the price must be at, or null to update whatever the version
+     * @return the updated product, or an error signal with ProductNotFoundException,
+     * VersionConflictException or ServerException
+     */
+    public Mono<Product> updateProduct(int id, Product product, Long expectedVersion) {
+        logger.debug("Saving product with id {} ...", id);
+
+        return reactivePriceRepository.updatePrice(id, product.getPrice(), expectedVersion)
+                .onErrorMap(ex -> ex instanceof DataAccessException || ex instanceof IllegalArgumentException,
+                        ex -> new ServerException("Unable to save product price for id - %d", id))
+                /* Only a failed update reads the product, to tell a missing product from a changed price */
+                .switchIfEmpty(Mono.defer(() -> (expectedVersion == null ? Mono.just(false) : reactivePriceRepository.existsById(id))
+                        .flatMap(exists -> Mono.error(exists
+                                ? new VersionConflictException("Product price was updated since version %d for id - %d", expectedVersion, id)
+                                : new ProductNotFoundException("Unable to find the product to update with Id - %d", id)))));
+    }
+}
@@ -0,0 +1,254 @@
+package com.retail.retailAPI.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses the responses of the redsky API. The title is read token by token and parsing stops
+ * as soon as it is found, so the rest of the document is never read into memory or built into
+ * a tree. Shared by the blocking and the reactive services, the reactive service feeds the body
+ * to a non-blocking parser buffer by buffer as it arrives
+ */
+@Component
+public class RedskyResponseParser {
+
+    private static Logger logger = LoggerFactory.getLogger(RedskyResponseParser.class);
+
+    /* Path of the product name in the response */
+    private static final String[] TITLE_PATH = {"product", "item", "product_description", "title"};
+
+    /* Thread safe and reused, creating it is the expensive part of parsing */
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * This method is responsible for extracting the product name straight from the
+     * response stream of the HTTP GET call
+     *
+     * @param response - Response body from external API
+     * @return name of the product
+     * @throws IOException if unable to read the response
+     */
+    public String getName(InputStream response) throws IOException {
+        String title = findName(response);
+        if (title == null)
+            throw new ProductNotFoundException("Unable to find product in redsky API");
+
+        return title;
+    }
+
+    /**
+     * Extracts the product name straight from the response stream. A response without a title
+     * is an expected outcome for unknown products, so it is returned as null instead of thrown
+     *
+     * @param response - Response body from external API
+     * @return name of the product or null if the response does not have one
+     * @throws IOException if unable to read the response
+     */
+    public String findName(InputStream response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            return findName(parser);
+        }
+    }
+
+    /**
+     * This method is responsible for extracting the product name from the JSON String
+     * that we received from the HTTP GET call
+     *
+     * @param response - Response from external API
+     * @return name of the product
+     * @throws Exception if unable to parse the response
+     */
+    public String getName(String response) {
+        if (response == null) {
+            throw new ServerException("Unable to Parse the response the external API");
+        }
+
+        String title;
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            title = findName(parser);
+        } catch (IOException ex) {
+            throw new ServerException("Unable to Parse the response the external API");
+        }
+
+        if (title == null)
+            throw new ProductNotFoundException("Unable to find product in redsky API");
+
+        return title;
+    }
+
+    /**
+     * Extracts the product name from the response body as its buffers arrive, without joining them.
+     * Every buffer is released once parsed, and the buffers that arrive after the title is found
+     * are released without being parsed
+     *
+     * @param response - Response body from external API
+     * @return name of the product, or an error signal with ProductNotFoundException or ServerException
+     */
+    public Mono<String> getName(Flux<DataBuffer> response) {
+        return Mono.defer(() -> {
+            TitleScanner scanner = new TitleScanner(jsonFactory);
+            return response
+                    .doOnNext(buffer -> {
+                        try {
+                            scanner.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(scanner::finish));
+        });
+    }
+
+    private String findName(JsonParser parser) throws IOException {
+        try {
+            return parser.nextToken() == JsonToken.START_OBJECT ? findTitle(parser) : null;
+        } catch (JsonProcessingException ex) {
+            logger.error("Unable to parse the Json String");
+            throw new ServerException("Unable to Parse the response the external API");
+        }
+    }
+
+    /**
+     * Walks down the title path from the root object, skipping every value that is not on the path
+     *
+     * @param parser - parser positioned on the root object
+     * @return the title or null if the response does not have one
+     */
+    private String findTitle(JsonParser parser) throws IOException {
+        int depth = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (TITLE_PATH[depth].equals(field)) {
+                if (depth == TITLE_PATH.length - 1) {
+                    return value.isScalarValue() ? parser.getText() : null;
+                }
+                if (value == JsonToken.START_OBJECT) {
+                    depth++;
+                    continue;
+                }
+            }
+            parser.skipChildren();
+        }
+
+        /* The object on the path ended, or the document did, without the next field */
+        return null;
+    }
+
+    /**
+     * Walks down the title path like {@link #findTitle(JsonParser)} over a non-blocking parser. The
+     * parser runs out of tokens at the end of every buffer, so the position on the path is kept
+     * between buffers instead of on the stack
+     */
+    private static class TitleScanner {
+
+        private final JsonParser parser;
+
+        private final ByteArrayFeeder feeder;
+
+        /* Number of objects entered on the title path */
+        private int depth;
+
+        /* Nesting inside a value that is not on the path, skipped token by token */
+        private int skipped;
+
+        private String field;
+
+        private boolean started;
+
+        private boolean done;
+
+        private String title;
+
+        TitleScanner(JsonFactory jsonFactory) {
+            try {
+                parser = jsonFactory.createNonBlockingByteArrayParser();
+            } catch (IOException ex) {
+                throw new ServerException("Unable to Parse the response the external API");
+            }
+            feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        void feed(DataBuffer buffer) {
+            if (done) {
+                return;
+            }
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                scan();
+            } catch (IOException ex) {
+                logger.error("Unable to parse the Json String");
+                throw new ServerException("Unable to Parse the response the external API");
+            }
+        }
+
+        String finish() {
+            if (!done) {
+                if (!started) {
+                    throw new ServerException("Unable to Parse the response the external API");
+                }
+                feeder.endOfInput();
+                try {
+                    scan();
+                } catch (IOException ex) {
+                    logger.error("Unable to parse the Json String");
+                    throw new ServerException("Unable to Parse the response the external API");
+                }
+            }
+
+            if (title == null)
+                throw new ProductNotFoundException("Unable to find product in redsky API");
+
+            return title;
+        }
+
+        private void scan() throws IOException {
+            JsonToken token;
+            while (!done && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+                if (token == null || !started && token != JsonToken.START_OBJECT) {
+                    /* The document ended, or it is not an object */
+                    done = true;
+                } else if (!started) {
+                    started = true;
+                } else if (skipped > 0) {
+                    if (token.isStructStart()) {
+                        skipped++;
+                    } else if (token.isStructEnd()) {
+                        skipped--;
+                    }
+                } else if (token == JsonToken.FIELD_NAME) {
+                    field = parser.getCurrentName();
+                } else if (token == JsonToken.END_OBJECT) {
+                    /* The object on the path ended without the next field */
+                    done = true;
+                } else if (TITLE_PATH[depth].equals(field) && depth == TITLE_PATH.length - 1) {
+                    title = token.isScalarValue() ? parser.getText() : null;
+                    done = true;
+                } else if (TITLE_PATH[depth].equals(field) && token == JsonToken.START_OBJECT) {
+                    depth++;
+                } else if (token.isStructStart()) {
+                    skipped = 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.retail.retailAPI.services;
+
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reloads hot products in the background before their cache entries expire, so requests for
+ * popular products never pay for a miss. Every run takes the hottest entries of each cache from
+ * its frequency sketch and reloads the ones that have used up most of their time to live: prices
+ * with a single query, names concurrently through the redsky bulkhead on a few threads of their own,
+ * so refreshes never take up the whole bulkhead. Prices are not reloaded while the price snapshot
+ * is enabled, its prices never expire and are kept current by the change stream
+ */
+@Service
+@ConditionalOnProperty(name = "cache.refresh-ahead.enabled", havingValue = "true")
+public class RefreshAheadService {
+
+    private static Logger logger = LoggerFactory.getLogger(RefreshAheadService.class);
+
+    @Autowired
+    PriceRepository priceRepository;
+
+    @Autowired
+    ProductNameService productNameService;
+
+    @Autowired
+    ProductCaches productCaches;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${cache.refresh-ahead.interval}")
+    private Duration interval;
+
+    @Value("${cache.refresh-ahead.size}")
+    private int size;
+
+    @Value("${cache.refresh-ahead.threshold}")
+    private double threshold;
+
+    @Value("${cache.refresh-ahead.concurrency}")
+    private int concurrency;
+
+    private ScheduledExecutorService refresher;
+
+    private ExecutorService nameRefresher;
+
+    @PostConstruct
+    public void init() {
+        nameRefresher = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("refresh-ahead-names-"));
+        refresher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("refresh-ahead-"));
+        refresher.scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        nameRefresher.shutdownNow();
+    }
+
+    void refresh() {
+        try {
+            refreshPrices();
+            refreshNames();
+        } catch (RuntimeException ex) {
+            /* An exception would cancel the schedule */
+            logger.error("Refresh ahead failed - {}", ex.getMessage());
+        }
+    }
+
+    private void refreshPrices() {
+        if (productCaches.isPriceSnapshotEnabled()) {
+            return;
+        }
+
+        List<Integer> expiring = expiring(ProductCaches.PRICES);
+        if (expiring.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> missing = new HashSet<>(expiring);
+        for (Product product : priceRepository.findPrices(expiring)) {
+            productCaches.putPriceIfNewer(product.getId(), product.getPrice());
+            missing.remove(product.getId());
+        }
+        productCaches.evictPrices(missing);
+
+        meterRegistry.counter("cache.refresh-ahead", "cache", ProductCaches.PRICES).increment(expiring.size());
+        logger.debug("Refreshed {} hot prices", expiring.size());
+    }
+
+    private void refreshNames() {
+        Map<Integer, Future<String>> refreshes = new LinkedHashMap<>();
+        for (Integer id : expiring(ProductCaches.NAMES)) {
+            refreshes.put(id, nameRefresher.submit(() -> productNameService.refreshName(id)));
+        }
+
+        int refreshed = 0;
+        for (Map.Entry<Integer, Future<String>> refresh : refreshes.entrySet()) {
+            try {
+                refresh.getValue().get();
+                refreshed++;
+            } catch (ExecutionException ex) {
+                /* The cached name is kept until it expires */
+                logger.debug("Unable to refresh the name of product {} - {}", refresh.getKey(), ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                /* Shutting down, the refreshes not done yet are dropped */
+                refreshes.values().forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        meterRegistry.counter("cache.refresh-ahead", "cache", ProductCaches.NAMES).increment(refreshed);
+    }
+
+    private List<Integer> expiring(String cache) {
+        return productCaches.hottest(cache, size).stream()
+                .filter(id -> productCaches.ageRatio(cache, id) >= threshold)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,36 @@
+package com.retail.retailAPI.cache;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdBloomFilterTest {
+
+    @Test
+    public void when_IdsAdded_Expect_NoFalseNegatives() {
+        IdBloomFilter filter = new IdBloomFilter(10000, 0.01);
+        for (int id = 13860000; id < 13870000; id++) {
+            filter.add(id);
+        }
+
+        for (int id = 13860000; id < 13870000; id++) {
+            assertThat(filter.mightContain(id)).isTrue();
+        }
+    }
+
+    @Test
+    public void when_IdsNotAdded_Expect_FalsePositivesNearRate() {
+        IdBloomFilter filter = new IdBloomFilter(10000, 0.01);
+        for (int id = 13860000; id < 13870000; id++) {
+            filter.add(id);
+        }
+
+        int falsePositives = 0;
+        for (int id = 50000000; id < 50100000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2000);
+    }
+}
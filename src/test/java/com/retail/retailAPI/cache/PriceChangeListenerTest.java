@@ -0,0 +1,99 @@
+package com.retail.retailAPI.cache;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PriceChangeListenerTest {
+
+    private static final String PRICE_UPDATE = "{'_id': {'_data': '01'}, 'operationType': 'update',"
+            + " 'ns': {'db': 'retail', 'coll': 'products'}, 'documentKey': {'_id': %s},"
+            + " 'fullDocument': {'_id': %s, 'current_price': {'value': 15.5, 'currency_code': 'USD', 'version': 2}},"
+            + " 'updateDescription': {'updatedFields': {'current_price.value': 15.5}, 'removedFields': []}}";
+
+    private PriceChangeListener listener;
+
+    private MongoConverter converter;
+
+    @Before
+    public void setUp() {
+        converter = mock(MongoConverter.class);
+        listener = new PriceChangeListener();
+        listener.mongoTemplate = mock(MongoTemplate.class);
+        listener.productCaches = mock(ProductCaches.class);
+        listener.meterRegistry = new SimpleMeterRegistry();
+        when(listener.mongoTemplate.getConverter()).thenReturn(converter);
+        when(listener.productCaches.getPrice(13860428)).thenReturn(new SimpleValueWrapper(new Price(13.49, "USD")));
+    }
+
+    @Test
+    public void when_CachedPriceChanged_Expect_CacheRefreshed() {
+        Price price = new Price(15.5, "USD", 2);
+        when(converter.read(eq(Product.class), any(Document.class))).thenReturn(new Product(13860428, null, price));
+
+        assertThat(listener.apply(change(String.format(PRICE_UPDATE, 13860428, 13860428)))).isTrue();
+
+        verify(listener.productCaches).putPriceIfNewer(13860428, price);
+        verify(listener.productCaches).evictMissing(13860428);
+    }
+
+    @Test
+    public void when_ProductDeleted_Expect_PriceEvicted() {
+        assertThat(listener.apply(change("{'_id': {'_data': '01'}, 'operationType': 'delete',"
+                + " 'ns': {'db': 'retail', 'coll': 'products'}, 'documentKey': {'_id': 13860428}}"))).isTrue();
+
+        verify(listener.productCaches).evictPrice(13860428);
+    }
+
+    @Test
+    public void when_IdNotAnInt_Expect_ChangeSkipped() {
+        assertThat(listener.apply(change(String.format(PRICE_UPDATE, "'13860428'", "'13860428'")))).isTrue();
+
+        verify(listener.productCaches, never()).putPriceIfNewer(anyInt(), any());
+        assertThat(listener.meterRegistry.counter("cache.change-stream.skipped").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void when_StoredPriceUnreadable_Expect_ChangeSkippedAndPriceEvicted() {
+        when(converter.read(eq(Product.class), any(Document.class))).thenThrow(new IllegalArgumentException("XYZ"));
+
+        assertThat(listener.apply(change(String.format(PRICE_UPDATE, 13860428, 13860428)))).isTrue();
+
+        verify(listener.productCaches).evictPrice(13860428);
+        verify(listener.productCaches, never()).putPriceIfNewer(anyInt(), any());
+        assertThat(listener.meterRegistry.counter("cache.change-stream.skipped").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void when_CollectionDropped_Expect_PricesClearedAndStreamReopened() {
+        assertThat(listener.apply(change("{'_id': {'_data': '01'}, 'operationType': 'drop',"
+                + " 'ns': {'db': 'retail', 'coll': 'products'}}"))).isFalse();
+
+        verify(listener.productCaches).clearPrices();
+    }
+
+    private static ChangeStreamDocument<Document> change(String json) {
+        return ChangeStreamDocument.createCodec(Document.class, MongoClientSettings.getDefaultCodecRegistry())
+                .decode(new BsonDocumentReader(BsonDocument.parse(json)), DecoderContext.builder().build());
+    }
+}
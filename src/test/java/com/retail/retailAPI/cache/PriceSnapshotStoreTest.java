@@ -0,0 +1,141 @@
+package com.retail.retailAPI.cache;
+
+import com.retail.retailAPI.models.Price;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PriceSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void when_PricesPut_Expect_SameUnitsCurrencyAndVersion() throws Exception {
+        try (PriceSnapshotStore store = new PriceSnapshotStore(folder.getRoot().toPath().resolve("prices"), 10000, 4)) {
+            for (int id = 13860000; id < 13870000; id++) {
+                assertThat(store.put(id, new Price(id % 1000, "USD", 1))).isTrue();
+            }
+            store.put(1, new Price(12.5, "JPY", 3));
+
+            assertThat(store.size()).isEqualTo(10001);
+            Price price = store.get(13860428);
+            assertThat(price.getValue()).isEqualTo(428);
+            assertThat(price.getCurrencyCode()).isEqualTo("USD");
+            assertThat(price.getVersion()).isEqualTo(1);
+            assertThat(store.get(1).getUnits()).isEqualTo(12);
+            assertThat(store.get(1).getCurrencyCode()).isEqualTo("JPY");
+            assertThat(store.get(2)).isNull();
+        }
+    }
+
+    @Test
+    public void when_OlderVersionPut_Expect_LaterVersionKept() throws Exception {
+        try (PriceSnapshotStore store = new PriceSnapshotStore(folder.getRoot().toPath().resolve("prices"), 100, 1)) {
+            store.put(1, new Price(10, "USD", 2));
+            store.put(1, new Price(5, "USD", 1));
+
+            assertThat(store.get(1).getValue()).isEqualTo(10);
+            assertThat(store.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void when_Removed_Expect_OthersOnProbeChainStillFound() throws Exception {
+        try (PriceSnapshotStore store = new PriceSnapshotStore(folder.getRoot().toPath().resolve("prices"), 100, 1)) {
+            for (int id = 1; id <= 50; id++) {
+                store.put(id, new Price(id, "USD", 0));
+            }
+            for (int id = 1; id <= 50; id += 2) {
+                store.remove(id);
+            }
+
+            for (int id = 1; id <= 50; id++) {
+                assertThat(store.get(id) == null).isEqualTo(id % 2 == 1);
+            }
+            assertThat(store.size()).isEqualTo(25);
+
+            /* Removed slots are reused without going over capacity */
+            for (int id = 1; id <= 50; id += 2) {
+                assertThat(store.put(id, new Price(id, "USD", 0))).isTrue();
+            }
+            assertThat(store.size()).isEqualTo(50);
+        }
+    }
+
+    @Test
+    public void when_StripeFull_Expect_PutRejected() throws Exception {
+        try (PriceSnapshotStore store = new PriceSnapshotStore(folder.getRoot().toPath().resolve("prices"), 12, 1)) {
+            int stored = 0;
+            for (int id = 1; id <= 100; id++) {
+                if (store.put(id, new Price(id, "USD", 0))) {
+                    stored++;
+                }
+            }
+
+            assertThat(stored).isLessThan(100);
+            assertThat(store.size()).isEqualTo(stored);
+        }
+    }
+
+    @Test
+    public void when_PricesRemovedAndPutOver_Expect_StripeNeverFull() throws Exception {
+        try (PriceSnapshotStore store = new PriceSnapshotStore(folder.getRoot().toPath().resolve("prices"), 12, 1)) {
+            for (int id = 1; id <= 12; id++) {
+                assertThat(store.put(id, new Price(id, "USD", 0))).isTrue();
+            }
+
+            /* Each removal leaves a marker, they must not count as prices held */
+            for (int id = 13; id <= 1000; id++) {
+                store.remove(id - 12);
+                assertThat(store.put(id, new Price(id, "USD", 0))).isTrue();
+            }
+
+            assertThat(store.size()).isEqualTo(12);
+            for (int id = 989; id <= 1000; id++) {
+                assertThat(store.get(id).getValue()).isEqualTo(id);
+            }
+            assertThat(store.get(988)).isNull();
+        }
+    }
+
+    @Test
+    public void when_ClosedCleanly_Expect_PricesServedOnReopen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("prices");
+        try (PriceSnapshotStore store = new PriceSnapshotStore(file, 1000, 4)) {
+            assertThat(store.isComplete()).isFalse();
+            store.put(13860428, new Price(13.49, "USD", 4));
+            store.markComplete();
+        }
+
+        try (PriceSnapshotStore store = new PriceSnapshotStore(file, 1000, 4)) {
+            assertThat(store.isComplete()).isTrue();
+            assertThat(store.get(13860428).getValue()).isEqualTo(13.49);
+            assertThat(store.get(13860428).getVersion()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void when_NotClosedCleanlyOrResized_Expect_EmptyOnReopen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("prices");
+        try (PriceSnapshotStore store = new PriceSnapshotStore(file, 1000, 4)) {
+            store.put(13860428, new Price(13.49, "USD", 4));
+        }
+
+        try (PriceSnapshotStore store = new PriceSnapshotStore(file, 1000, 4)) {
+            assertThat(store.isComplete()).isFalse();
+            assertThat(store.get(13860428)).isNull();
+            store.put(13860428, new Price(13.49, "USD", 4));
+            store.markComplete();
+        }
+
+        try (PriceSnapshotStore store = new PriceSnapshotStore(file, 100000, 4)) {
+            assertThat(store.isComplete()).isFalse();
+            assertThat(store.get(13860428)).isNull();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.retail.retailAPI.cache;
+
+import com.retail.retailAPI.exceptions.ServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+    private Counter coalesced;
+
+    private SingleFlight<Integer, String> singleFlight;
+
+    @Before
+    public void setUp() {
+        coalesced = new SimpleMeterRegistry().counter("coalesced");
+        singleFlight = new SingleFlight<>(coalesced);
+    }
+
+    @Test
+    public void when_ConcurrentLoadsOfSameKey_Expect_SingleLoadShared() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute(1, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "test";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.execute(1, () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        while (coalesced.count() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("test");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("test");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void when_LoadCompleted_Expect_NextCallLoadsAgain() {
+        assertThat(singleFlight.execute(1, () -> "test")).isEqualTo("test");
+        assertThat(singleFlight.execute(1, () -> "other")).isEqualTo("other");
+        assertThat(coalesced.count()).isZero();
+    }
+
+    @Test
+    public void when_LoadFails_Expect_FailurePropagated() {
+        assertThatThrownBy(() -> singleFlight.execute(1, () -> {
+            throw new ServerException("test");
+        })).isInstanceOf(ServerException.class);
+        assertThat(singleFlight.execute(1, () -> "test")).isEqualTo("test");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.retail.retailAPI.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TwoTierCacheTest {
+
+    private ConcurrentMapCache local;
+
+    private ConcurrentMapCache shared;
+
+    private TwoTierCache cache;
+
+    @Before
+    public void setUp() {
+        local = new ConcurrentMapCache("names");
+        shared = new ConcurrentMapCache("names");
+        cache = new TwoTierCache(local, shared);
+    }
+
+    @Test
+    public void when_SharedTierHit_Expect_PromotedToLocalTier() {
+        shared.put(1, "test");
+
+        assertThat(cache.get(1, String.class)).isEqualTo("test");
+        assertThat(local.get(1, String.class)).isEqualTo("test");
+    }
+
+    @Test
+    public void when_Put_Expect_BothTiersUpdated() {
+        cache.put(1, "test");
+
+        assertThat(local.get(1, String.class)).isEqualTo("test");
+        assertThat(shared.get(1, String.class)).isEqualTo("test");
+    }
+
+    @Test
+    public void when_Evicted_Expect_BothTiersEvicted() {
+        cache.put(1, "test");
+        cache.evict(1);
+
+        assertThat(local.get(1)).isNull();
+        assertThat(shared.get(1)).isNull();
+    }
+
+    @Test
+    public void when_SharedTierFails_Expect_LocalTierStillServes() {
+        Cache failing = mock(Cache.class);
+        when(failing.get(any())).thenThrow(new IllegalStateException("test"));
+        cache = new TwoTierCache(local, failing);
+
+        assertThat(cache.get(1)).isNull();
+
+        local.put(1, "test");
+        assertThat(cache.get(1, String.class)).isEqualTo("test");
+    }
+}
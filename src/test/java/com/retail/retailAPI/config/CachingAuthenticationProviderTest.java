@@ -0,0 +1,60 @@
+package com.retail.retailAPI.config;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingAuthenticationProviderTest {
+
+    private AuthenticationProvider users;
+
+    private CachingAuthenticationProvider provider;
+
+    @Before
+    public void setUp() {
+        users = mock(AuthenticationProvider.class);
+        when(users.authenticate(any())).thenAnswer(invocation -> {
+            Authentication attempt = invocation.getArgument(0);
+            if (!"password".equals(attempt.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return new UsernamePasswordAuthenticationToken(attempt.getName(), null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        });
+        provider = new CachingAuthenticationProvider(users, Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    public void when_SameCredentialsRepeated_Expect_CheckedOnce() {
+        Authentication first = provider.authenticate(new UsernamePasswordAuthenticationToken("admin", "password"));
+        Authentication second = provider.authenticate(new UsernamePasswordAuthenticationToken("admin", "password"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.isAuthenticated()).isTrue();
+        verify(users, times(1)).authenticate(any());
+    }
+
+    @Test
+    public void when_WrongPasswordAfterVerified_Expect_Rejected() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("admin", "password"));
+
+        assertThatThrownBy(() -> provider.authenticate(new UsernamePasswordAuthenticationToken("admin", "guess")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> provider.authenticate(new UsernamePasswordAuthenticationToken("admin", "guess")))
+                .isInstanceOf(BadCredentialsException.class);
+        verify(users, times(3)).authenticate(any());
+    }
+}
@@ -0,0 +1,99 @@
+package com.retail.retailAPI.controllers;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdmissionControlTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    public void when_BurstUsedUp_Expect_ClientToldToWaitForNextToken() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 1000, clock::get);
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.acquire("scraper")).isZero();
+        }
+
+        long wait = limiter.acquire("scraper");
+        assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        /* Other clients have buckets of their own */
+        assertThat(limiter.acquire("shopper")).isZero();
+
+        clock.addAndGet(wait);
+        assertThat(limiter.acquire("scraper")).isZero();
+        assertThat(limiter.acquire("scraper")).isPositive();
+    }
+
+    @Test
+    public void when_ClientIdle_Expect_BurstRefilled() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 1000, clock::get);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("shopper");
+        }
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.acquire("shopper")).isZero();
+        }
+        assertThat(limiter.acquire("shopper")).isPositive();
+    }
+
+    @Test
+    public void when_LimitReached_Expect_RequestsShed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 2, TimeUnit.MILLISECONDS.toNanos(100), clock::get);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+
+        limit.release(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void when_LatencyOverTarget_Expect_LimitShrinksOncePerTarget() {
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 100, target, clock::get);
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+
+        limit.release(target * 2);
+        limit.release(target * 2);
+        assertThat(limit.getLimit()).isEqualTo(90);
+
+        clock.addAndGet(target);
+        limit.release(target * 2);
+        assertThat(limit.getLimit()).isEqualTo(81);
+    }
+
+    @Test
+    public void when_FastWhileInUse_Expect_LimitGrowsBackUpToMax() {
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 11, target, clock::get);
+        limit.tryAcquire();
+        limit.release(target * 2);
+        assertThat(limit.getLimit()).isEqualTo(9);
+
+        /* Half of the limit in flight, every limit of fast requests grows it by one */
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                limit.tryAcquire();
+            }
+            for (int i = 0; i < 5; i++) {
+                limit.release(target / 2);
+                limit.tryAcquire();
+            }
+            for (int i = 0; i < 5; i++) {
+                limit.release(target / 2);
+            }
+        }
+        assertThat(limit.getLimit()).isEqualTo(11);
+    }
+}
@@ -1,10 +1,18 @@
 package com.retail.retailAPI.controllers;
 
+import com.retail.retailAPI.cache.ProductCaches;
 import com.retail.retailAPI.exceptions.ProductNotFoundException;
 import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
 import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.PriceUpdate;
+import com.retail.retailAPI.models.PriceUpdateBatch;
 import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductBatch;
+import com.retail.retailAPI.models.ProductLookup;
+import com.retail.retailAPI.repositories.PriceConverters;
 import com.retail.retailAPI.services.ProductService;
+import org.bson.Document;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,21 +21,35 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = {"product.payload-cache.enabled=true", "product.payload-cache.gzip=true"})
 @AutoConfigureMockMvc
 public class ProductControllerTest {
 
@@ -37,6 +59,9 @@ public class ProductControllerTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private ProductCaches productCaches;
+
     @MockBean
     private ProductService productService;
 
@@ -50,7 +75,7 @@ public class ProductControllerTest {
     @Test
     public void when_ProductReturned_Expect_RetrieveSuccess() throws Exception {
         Product product = new Product(1, "test", new Price(1, "USD"));
-        when(productService.getProduct(anyInt())).thenReturn(Optional.of(product));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
 
         RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
                 .accept(MediaType.APPLICATION_JSON);
@@ -58,9 +83,134 @@ public class ProductControllerTest {
         mvc.perform(builder).andExpect(status().is2xxSuccessful());
     }
 
+    @Test
+    public void when_ProductReturned_Expect_CachingHeaders() throws Exception {
+        Product product = new Product(1, "test", new Price(1, "USD"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(product)))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=60")));
+    }
+
+    @Test
+    public void when_ETagMatches_Expect_NotModified() throws Exception {
+        Product product = new Product(1, "test", new Price(1, "USD"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .header(HttpHeaders.IF_NONE_MATCH, PriceVersions.eTag(product))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void when_StaleProductReturned_Expect_WarningHeader() throws Exception {
+        Product product = new Product(1, "test", new Price(1, "USD"));
+        product.setStale(true);
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().exists(HttpHeaders.WARNING));
+    }
+
+    @Test
+    public void when_GzipAccepted_Expect_GzippedPayload() throws Exception {
+        Product product = new Product(10, "test ".repeat(100), new Price(1, "USD"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                .accept(MediaType.APPLICATION_JSON);
+
+        String eTag = PriceVersions.eTag(product);
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, eTag.substring(0, eTag.length() - 1) + "-gzip\""))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)));
+    }
+
+    @Test
+    public void when_GzipRefused_Expect_PlainPayload() throws Exception {
+        Product product = new Product(10, "test ".repeat(100), new Price(1, "USD"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(product)))
+                .andExpect(jsonPath("$.name").value(product.getName()));
+    }
+
+    @Test
+    public void when_AcceptEncodingMissing_Expect_PlainPayload() throws Exception {
+        Product product = new Product(10, "test ".repeat(100), new Price(1, "USD"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(product)))
+                .andExpect(jsonPath("$.name").value(product.getName()));
+    }
+
+    @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
+    @Test
+    public void when_PriceUpdated_Expect_OutdatedPayloadNotServed() throws Exception {
+        Product product = new Product(10, "test", new Price(1, "USD", 1));
+        Product updated = new Product(10, "test", new Price(34, "USD", 2));
+        productCaches.putName(10, product.getName());
+        productCaches.putPrice(10, product.getPrice());
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        /* The first read builds the payload and the second one is served from it */
+        mvc.perform(MockMvcRequestBuilders.get("/api/v1/products/10").accept(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(product)));
+        mvc.perform(MockMvcRequestBuilders.get("/api/v1/products/10").accept(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(product)));
+        verify(productService, times(1)).lookupProduct(10);
+
+        /* The update caches the new price as the service does */
+        when(productService.updateProduct(anyInt(), any(Product.class), any())).thenAnswer(invocation -> {
+            productCaches.putPrice(10, updated.getPrice());
+            return Optional.of(updated);
+        });
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(updated));
+        mvc.perform(MockMvcRequestBuilders.put("/api/v1/products/10")
+                .content("{\"id\": 10, \"name\": \"test\", \"price\": {\"value\": 34, \"currencyCode\": \"USD\"}}")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is2xxSuccessful());
+
+        mvc.perform(MockMvcRequestBuilders.get("/api/v1/products/10").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().string(HttpHeaders.ETAG, PriceVersions.eTag(updated)))
+                .andExpect(jsonPath("$.price.value").value(34.0));
+        verify(productService, times(2)).lookupProduct(10);
+    }
+
     @Test
     public void when_ProductNotFound_Expect_RetrieveFailure() throws Exception {
-        when(productService.getProduct(anyInt())).thenThrow(mock(ProductNotFoundException.class));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.notFound(10));
 
         RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
                 .accept(MediaType.APPLICATION_JSON);
@@ -70,7 +220,7 @@ public class ProductControllerTest {
 
     @Test
     public void when_InternalErrorOccurs_Expect_RetrieveFailure() throws Exception{
-        when(productService.getProduct(anyInt())).thenThrow(mock(ServerException.class));
+        when(productService.lookupProduct(anyInt())).thenThrow(mock(ServerException.class));
 
         RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
                 .accept(MediaType.APPLICATION_JSON);
@@ -78,11 +228,113 @@ public class ProductControllerTest {
         mvc.perform(builder).andExpect(status().is5xxServerError());
     }
 
+    @Test
+    public void when_BatchRequested_Expect_RetrieveSuccess() throws Exception {
+        Product product = new Product(1, "test", new Price(1, "USD"));
+        when(productService.getProducts(anyCollection()))
+                .thenReturn(new ProductBatch(List.of(product), Map.of(2, "Unable to find the item for ID - 2")));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products?ids=1,2")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder).andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    public void when_BatchRequestedWithPayloadsCached_Expect_SameProductsAndErrors() throws Exception {
+        Product first = new Product(1, "one", new Price(1, "USD", 3));
+        Product second = new Product(3, "three", new Price(3.5, "USD", 1));
+        productCaches.putName(1, first.getName());
+        productCaches.putPrice(1, first.getPrice());
+        when(productService.getProducts(anyCollection()))
+                .thenReturn(new ProductBatch(List.of(first, second), Map.of(2, "Unable to find the item for ID - 2")));
+
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/v1/products?ids=1,2,3")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().is2xxSuccessful())
+                    .andExpect(jsonPath("$.products.length()").value(2))
+                    .andExpect(jsonPath("$.products[0].id").value(1))
+                    .andExpect(jsonPath("$.products[0].price.version").value(3))
+                    .andExpect(jsonPath("$.products[1].name").value("three"))
+                    .andExpect(jsonPath("$.errors['2']").value("Unable to find the item for ID - 2"));
+        }
+        assertThat(productCaches.getPayload(1)).isNotNull();
+    }
+
+    @Test
+    public void when_ProductStoredWithoutPrice_Expect_ServedWithoutETag() throws Exception {
+        Product product = new Product(10, "test", null);
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(product));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.name").value("test"));
+        assertThat(productCaches.getPayload(10)).isNull();
+    }
+
+    @Test
+    public void when_StoredPriceUnreadable_Expect_ServedWithoutPrice() throws Exception {
+        Price unreadable = new PriceConverters.PriceReader().convert(new Document("value", 13.49).append("currency_code", "US$"));
+        when(productService.lookupProduct(anyInt())).thenReturn(ProductLookup.found(new Product(10, "test", unreadable)));
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products/10")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.id").value(10))
+                .andExpect(jsonPath("$.price").doesNotExist());
+        assertThat(productCaches.getPayload(10)).isNull();
+    }
+
+    @Test
+    public void when_BatchHoldsProductWithoutPrice_Expect_WholeBatchWritten() throws Exception {
+        Product priced = new Product(1, "one", new Price(1, "USD", 3));
+        Product unpriced = new Product(3, "three", null);
+        when(productService.getProducts(anyCollection()))
+                .thenReturn(new ProductBatch(List.of(unpriced, priced), Map.of()));
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/api/v1/products?ids=1,3")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.products.length()").value(2))
+                .andExpect(jsonPath("$.products[0].name").value("three"))
+                .andExpect(jsonPath("$.products[1].price.version").value(3));
+    }
+
+    @Test
+    public void when_BatchTooLarge_Expect_RetrieveFailure() throws Exception {
+        StringBuilder ids = new StringBuilder("1");
+        for (int i = 2; i <= 201; i++) {
+            ids.append(',').append(i);
+        }
+
+        RequestBuilder builder = MockMvcRequestBuilders.get("/api/v1/products?ids=" + ids)
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder).andExpect(status().is4xxClientError());
+    }
+
     @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
     @Test
     public void when_UpdateSuccess_Expect_UpdateSuccess() throws Exception {
         Product product = new Product(1, "test", new Price(1, "USD"));
-        when(productService.updateProduct(anyInt(), any(Product.class)))
+        when(productService.updateProduct(anyInt(), any(Product.class), any()))
                 .thenReturn(Optional.of(product));
 
         RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products/10")
@@ -103,7 +355,7 @@ public class ProductControllerTest {
     @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
     @Test
     public void when_ProductNotFound_Expect_UpdateFailure() throws Exception {
-        when(productService.updateProduct(anyInt(), any(Product.class)))
+        when(productService.updateProduct(anyInt(), any(Product.class), any()))
                 .thenThrow(mock(ProductNotFoundException.class));
 
         RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products/10")
@@ -124,7 +376,7 @@ public class ProductControllerTest {
     @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
     @Test
     public void when_InternalServerError_Expect_UpdateFailure() throws Exception {
-        when(productService.updateProduct(anyInt(), any(Product.class)))
+        when(productService.updateProduct(anyInt(), any(Product.class), any()))
                 .thenThrow(mock(ServerException.class));
 
         RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products/10").content("{\n" +
@@ -140,4 +392,69 @@ public class ProductControllerTest {
 
         mvc.perform(builder).andExpect(status().is5xxServerError());
     }
+
+    @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
+    @Test
+    public void when_PriceVersionChanged_Expect_UpdateConflict() throws Exception {
+        when(productService.updateProduct(anyInt(), any(Product.class), eq(3L)))
+                .thenThrow(mock(VersionConflictException.class));
+
+        RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products/10")
+                .content("{\n" +
+                "  \"id\": 10,\n" +
+                "  \"name\": \"test\",\n" +
+                "  \"price\": {\n" +
+                "    \"value\": 34,\n" +
+                "    \"currencyCode\": \"USD\"\n" +
+                "  }\n" +
+                "}")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder).andExpect(status().isConflict());
+    }
+
+    @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
+    @Test
+    public void when_BulkPriceUpdate_Expect_UpdateSuccess() throws Exception {
+        when(productService.updatePrices(any())).thenAnswer(invocation -> {
+            Iterator<PriceUpdate> updates = invocation.getArgument(0);
+            int updated = 0;
+            while (updates.hasNext()) {
+                updates.next();
+                updated++;
+            }
+            return new PriceUpdateBatch(updated, Map.of());
+        });
+
+        RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products")
+                .content("{\"id\": 10, \"current_price\": {\"value\": 34, \"currencyCode\": \"USD\"}}\n" +
+                        "{\"id\": 11, \"current_price\": {\"value\": 12.5, \"currencyCode\": \"USD\"}}\n")
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder)
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.updated").value(2));
+    }
+
+    @WithMockUser(value = "admin", password = "{noop}password", roles = {"ADMIN"})
+    @Test
+    public void when_BulkPriceUpdateMalformed_Expect_UpdateFailure() throws Exception {
+        when(productService.updatePrices(any())).thenAnswer(invocation -> {
+            Iterator<PriceUpdate> updates = invocation.getArgument(0);
+            while (updates.hasNext()) {
+                updates.next();
+            }
+            return new PriceUpdateBatch(0, Map.of());
+        });
+
+        RequestBuilder builder = MockMvcRequestBuilders.put("/api/v1/products")
+                .content("[{\"id\": 10, \"current_price\": {\"value\": 34, ")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(builder).andExpect(status().is4xxClientError());
+    }
 }
@@ -0,0 +1,66 @@
+package com.retail.retailAPI.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.models.Price;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PriceConvertersTest {
+
+    @Test
+    public void when_PriceWritten_Expect_StoredShapeKept() {
+        Document document = new PriceConverters.PriceWriter().convert(new Price(13.49, "USD", 3));
+
+        assertThat(document.get("value")).isEqualTo(13.49);
+        assertThat(document.get("currency_code")).isEqualTo("USD");
+        assertThat(document.get("version")).isEqualTo(3L);
+    }
+
+    @Test
+    public void when_PriceStoredBeforeVersioning_Expect_ReadAtVersionZero() {
+        Price price = new PriceConverters.PriceReader().convert(new Document("value", 13.49).append("currency_code", "USD"));
+
+        assertThat(price.getUnits()).isEqualTo(1349);
+        assertThat(price.getValue()).isEqualTo(13.49);
+        assertThat(price.getVersion()).isZero();
+    }
+
+    @Test
+    public void when_PricesRead_Expect_CurrencyShared() {
+        Price first = new PriceConverters.PriceReader().convert(new Document("value", 1.5).append("currency_code", new String("USD")));
+        Price second = new PriceConverters.PriceReader().convert(new Document("value", 2.5).append("currency_code", new String("USD")));
+
+        assertThat(first.getCurrency()).isSameAs(second.getCurrency());
+    }
+
+    @Test
+    public void when_StoredCurrencyNotIso_Expect_ReadAsNoPrice() {
+        assertThat(new PriceConverters.PriceReader().convert(new Document("value", 13.49).append("currency_code", "US$"))).isNull();
+        assertThat(new PriceConverters.PriceReader().convert(new Document("value", 1e300).append("currency_code", "USD"))).isNull();
+    }
+
+    @Test
+    public void when_ValueOutOfRange_Expect_InvalidRequest() {
+        assertThatThrownBy(() -> new Price(1e300, "USD"))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    public void when_PriceSerialized_Expect_JsonShapeKept() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(new Price(13.49, "USD", 3));
+
+        List<String> fields = new ArrayList<>();
+        objectMapper.readTree(json).fieldNames().forEachRemaining(fields::add);
+
+        assertThat(fields).containsExactlyInAnyOrder("value", "currencyCode", "version");
+        assertThat(objectMapper.readValue(json, Price.class).getUnits()).isEqualTo(1349);
+    }
+}
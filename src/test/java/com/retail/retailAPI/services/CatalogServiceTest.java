@@ -0,0 +1,132 @@
+package com.retail.retailAPI.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.exceptions.InvalidRequestException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.models.CatalogImport;
+import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CatalogServiceTest {
+
+    private static final String CATALOG =
+            "{\"_id\": 1, \"name\": \"one\", \"current_price\": {\"value\": 1.5, \"currency_code\": \"USD\"}}\n" +
+            "{\"_id\": 2, \"name\": \"two\", \"current_price\": {\"value\": 2, \"currency_code\": \"USD\"}}\n" +
+            "{\"_id\": 3, \"name\": \"three\"}\n" +
+            "{\"_id\": 4, \"name\": \"four\", \"current_price\": {\"value\": 4.5, \"currency_code\": \"USD\"}}\n" +
+            "{\"_id\": 5, \"current_price\": {\"value\": 5.5, \"currency_code\": \"USD\"}}\n";
+
+    private CatalogService catalogService;
+
+    private PriceRepository priceRepository;
+
+    private MongoTemplate mongoTemplate;
+
+    @Before
+    public void setUp() {
+        priceRepository = mock(PriceRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+
+        catalogService = new CatalogService();
+        catalogService.priceRepository = priceRepository;
+        catalogService.mongoTemplate = mongoTemplate;
+        catalogService.productCaches = mock(ProductCaches.class);
+        catalogService.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(catalogService, "batchSize", 2);
+        ReflectionTestUtils.setField(catalogService, "parallelism", 2);
+        catalogService.init();
+    }
+
+    @After
+    public void tearDown() {
+        catalogService.shutdown();
+    }
+
+    private Iterator<JsonNode> entries() throws IOException {
+        return new ObjectMapper().readerFor(JsonNode.class).readValues(CATALOG);
+    }
+
+    @Test
+    public void when_CatalogImported_Expect_BatchesUpsertedAndInvalidCounted() throws IOException {
+        CatalogImport result = catalogService.importCatalog(entries(), "import-1");
+
+        assertThat(result.getImported()).isEqualTo(4);
+        assertThat(result.getInvalid()).isEqualTo(1);
+        verify(priceRepository, times(2)).upsertProducts(anyList());
+        verify(mongoTemplate, atLeastOnce()).upsert(any(Query.class), any(Update.class), eq("catalog_imports"));
+    }
+
+    @Test
+    public void when_ImportResumed_Expect_CommittedEntriesSkipped() throws IOException {
+        when(mongoTemplate.findById(eq("import-1"), eq(Document.class), anyString()))
+                .thenReturn(new Document("committed", 3L));
+
+        CatalogImport result = catalogService.importCatalog(entries(), "import-1");
+
+        assertThat(result.getSkipped()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(2);
+        verify(priceRepository, times(1)).upsertProducts(anyList());
+    }
+
+    @Test
+    public void when_BodyUnreadable_Expect_ImportIdInError() throws IOException {
+        Iterator<JsonNode> entries = new ObjectMapper().readerFor(JsonNode.class).readValues(CATALOG + "{\"_id\": 6,");
+        Iterator<JsonNode> failing = new Iterator<JsonNode>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return entries.hasNext();
+                } catch (RuntimeException ex) {
+                    throw new InvalidRequestException("Unable to read the request body - %s", ex.getMessage());
+                }
+            }
+
+            @Override
+            public JsonNode next() {
+                try {
+                    return entries.next();
+                } catch (RuntimeException ex) {
+                    throw new InvalidRequestException("Unable to read the request body - %s", ex.getMessage());
+                }
+            }
+        };
+
+        assertThatThrownBy(() -> catalogService.importCatalog(failing, "import-1"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("import-1");
+    }
+
+    @Test
+    public void when_WritersShutDown_Expect_ImportFailsWithImportId() throws IOException {
+        catalogService.shutdown();
+
+        assertThatThrownBy(() -> catalogService.importCatalog(entries(), "import-1"))
+                .isInstanceOf(ServerException.class)
+                .hasMessageContaining("import-1");
+    }
+}
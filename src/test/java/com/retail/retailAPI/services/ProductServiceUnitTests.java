@@ -1,10 +1,17 @@
 package com.retail.retailAPI.services;
 
+import com.retail.retailAPI.cache.ProductCaches;
 import com.retail.retailAPI.exceptions.ProductNotFoundException;
 import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.exceptions.VersionConflictException;
 import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.PriceUpdate;
+import com.retail.retailAPI.models.PriceUpdateBatch;
 import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.models.ProductBatch;
+import com.retail.retailAPI.models.ProductLookup;
 import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,17 +19,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -41,6 +60,9 @@ public class ProductServiceUnitTests {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Before
     public void setUp() {
         for (String cache : cacheManager.getCacheNames()) {
@@ -50,60 +72,225 @@ public class ProductServiceUnitTests {
 
     @Test(expected = ProductNotFoundException.class)
     public void when_ProductNotFound_Expect_GetThrowsException() {
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.empty());
 
         productService.getProduct(4);
     }
 
+    @Test
+    public void when_ProductNotFound_Expect_LookupNotFound() {
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.empty());
+
+        ProductLookup result = productService.lookupProduct(4);
+        assertThat(result.isFound()).isFalse();
+        assertThat(result.getMessage()).isEqualTo("Unable to find the item for ID - 4");
+    }
+
+    @Test
+    public void when_MissingProductLookedUpAgain_Expect_NoDatabaseRead() {
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.empty());
+
+        productService.lookupProduct(4);
+        ProductLookup result = productService.lookupProduct(4);
+
+        assertThat(result.isFound()).isFalse();
+        verify(priceRepository, times(1)).findPrice(4);
+    }
+
+    @Test
+    public void when_MissingProductUpdated_Expect_NoLongerMissing() {
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.empty());
+        productService.lookupProduct(1);
+
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenReturn(new Product(1, "test", new Price(5, "USD")));
+        productService.updateProduct(1, new Product(1, "test", new Price(5, "USD")));
+
+        assertThat(cacheManager.getCache(ProductCaches.MISSING).get(1)).isNull();
+    }
+
+    @Test
+    public void when_RedskyHasNoTitle_Expect_LookupNotFound() {
+        Product product = new Product(1, null, new Price(4, "USD"));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
+
+        redskyReturns("{ \"product\" : { \"item\": {}}}");
+
+        ProductLookup result = productService.lookupProduct(1);
+        assertThat(result.isFound()).isFalse();
+        assertThat(result.getMessage()).isEqualTo("Unable to find product in redsky API");
+    }
+
     @Test
     public void when_ProductFound_Expect_ProductRetrieved() {
         Product product = new Product(1, "test", new Price(4, "USD"));
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.of(product));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
 
         String externalProduct = "{ \"product\" : { \"item\": { \"product_description\": { \"title\": \"Test Title\"}}}}";
-        when(restTemplate.getForObject(any(URI.class), any(Class.class))).thenReturn(externalProduct);
+        redskyReturns(externalProduct);
 
         Optional<Product> result = productService.getProduct(1);
         assertThat(result.isPresent()).isTrue();
         assertThat(result.get().getName()).isEqualTo("Test Title");
     }
 
+    @Test
+    public void when_ProductRetrieved_Expect_StageTimingsRecorded() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
+
+        String externalProduct = "{ \"product\" : { \"item\": { \"product_description\": { \"title\": \"Test Title\"}}}}";
+        redskyReturns(externalProduct);
+
+        long before = meterRegistry.timer("product.lookup", "stage", "total").count();
+        productService.getProduct(1);
+
+        assertThat(meterRegistry.timer("product.lookup", "stage", "total").count()).isEqualTo(before + 1);
+        assertThat(meterRegistry.timer("product.lookup", "stage", "price").count()).isPositive();
+        assertThat(meterRegistry.timer("product.lookup", "stage", "name").count()).isPositive();
+    }
+
     @Test(expected = ServerException.class)
     public void when_ExternalApiError_Expect_GetThrowsException() {
-        Product product = new Product(1, "test", new Price(4, "USD"));
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.of(product));
+        Product product = new Product(1, null, new Price(4, "USD"));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
 
-        when(restTemplate.getForObject(any(URI.class), any(Class.class))).thenThrow(new RestClientException("test"));
+        when(redskyCall()).thenThrow(new RestClientException("test"));
 
         productService.getProduct(1);
     }
 
+    @Test
+    public void when_ExternalApiError_Expect_LastKnownNameServedAsStale() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
+
+        when(redskyCall()).thenThrow(new RestClientException("test"));
+
+        Optional<Product> result = productService.getProduct(1);
+        assertThat(result.get().getName()).isEqualTo("test");
+        assertThat(result.get().isStale()).isTrue();
+    }
+
     @Test(expected = ProductNotFoundException.class)
     public void when_ProductNotFound_Expect_UpdateThrowsException() {
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenReturn(null);
 
         productService.updateProduct(4, mock(Product.class));
     }
 
     @Test(expected = ServerException.class)
     public void when_MongoRepoFails_Expect_UpdateThrowsException() {
-        Product product = new Product(1, "test", new Price(4, "USD"));
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.of(product));
-
-        when(priceRepository.save(any())).thenThrow(new IllegalArgumentException());
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenThrow(new DataAccessResourceFailureException("test"));
 
         productService.updateProduct(1, mock(Product.class));
     }
 
     @Test
     public void when_UpdateSucceeds_Expect_UpdatedProduct() {
-        Product product = new Product(1, "test", new Price(4, "USD"));
-        when(priceRepository.findById(anyInt())).thenReturn(Optional.of(product));
-
-        //when(priceRepository.save(any())).thenReturn(true);
+        Product product = new Product(1, "test", new Price(5, "USD"));
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenReturn(product);
 
         Optional<Product> result = productService.updateProduct(1, new Product(1, "test", new Price(5, "USD")));
         assertThat(result.isPresent()).isTrue();
         assertThat(result.get().getPrice().getValue()).isEqualTo(5);
+        verify(priceRepository, times(0)).findPrice(anyInt());
+    }
+
+    @Test(expected = VersionConflictException.class)
+    public void when_PriceVersionChanged_Expect_UpdateThrowsConflict() {
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenReturn(null);
+        when(priceRepository.existsById(anyInt())).thenReturn(true);
+
+        productService.updateProduct(1, new Product(1, "test", new Price(5, "USD")), 3L);
+    }
+
+    @Test
+    public void when_BatchHasMissingProducts_Expect_PartialResults() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(priceRepository.findPrices(any())).thenReturn(List.of(product));
+
+        String externalProduct = "{ \"product\" : { \"item\": { \"product_description\": { \"title\": \"Test Title\"}}}}";
+        redskyReturns(externalProduct);
+
+        ProductBatch result = productService.getProducts(List.of(1, 2));
+        assertThat(result.getProducts()).hasSize(1);
+        assertThat(result.getProducts().get(0).getName()).isEqualTo("Test Title");
+        assertThat(result.getErrors()).containsOnlyKeys(2);
+    }
+
+    @Test
+    public void when_BatchNameLookupFails_Expect_ErrorForThatId() {
+        Product product = new Product(1, null, new Price(4, "USD"));
+        when(priceRepository.findPrices(any())).thenReturn(List.of(product));
+
+        when(redskyCall()).thenThrow(new RestClientException("test"));
+
+        ProductBatch result = productService.getProducts(List.of(1));
+        assertThat(result.getProducts()).isEmpty();
+        assertThat(result.getErrors()).containsEntry(1, "Unable to access the provided API");
+    }
+
+    @Test
+    public void when_PriceUpdated_Expect_CachedNameKeptWithoutRedskyCall() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(priceRepository.findPrice(anyInt())).thenReturn(Optional.of(product));
+
+        when(priceRepository.updatePrice(anyInt(), any(), any())).thenReturn(new Product(1, "test", new Price(5, "USD")));
+
+        String externalProduct = "{ \"product\" : { \"item\": { \"product_description\": { \"title\": \"Test Title\"}}}}";
+        redskyReturns(externalProduct);
+
+        productService.getProduct(1);
+        productService.updateProduct(1, new Product(1, "test", new Price(5, "USD")));
+
+        Optional<Product> result = productService.getProduct(1);
+        assertThat(result.get().getName()).isEqualTo("Test Title");
+        assertThat(result.get().getPrice().getValue()).isEqualTo(5);
+        verify(restTemplate, times(1)).execute(any(URI.class), any(HttpMethod.class),
+                any(RequestCallback.class), any(ResponseExtractor.class));
+    }
+
+    @Test
+    public void when_PricesUpdated_Expect_MissingAndInvalidReported() {
+        when(priceRepository.updatePrices(anyMap())).thenReturn(Map.of(1, new Price(5, "USD", 1)));
+        cacheManager.getCache(ProductCaches.PRICES).put(1, new Price(4, "USD"));
+
+        PriceUpdateBatch result = productService.updatePrices(List.of(
+                new PriceUpdate(1, new Price(5, "USD")),
+                new PriceUpdate(2, new Price(6, "USD")),
+                new PriceUpdate(3, null)).iterator());
+
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getErrors()).containsOnlyKeys(2, 3);
+
+        /* The new version is written through to the cache */
+        Price cached = (Price) cacheManager.getCache(ProductCaches.PRICES).get(1).get();
+        assertThat(cached.getValue()).isEqualTo(5);
+        assertThat(cached.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void when_PriceNotPositive_Expect_UpdateRejected() {
+        PriceUpdateBatch result = productService.updatePrices(List.of(
+                new PriceUpdate(1, new Price(0, "USD")),
+                new PriceUpdate(2, new Price(-1, "USD"))).iterator());
+
+        assertThat(result.getUpdated()).isZero();
+        assertThat(result.getErrors()).containsOnlyKeys(1, 2);
+        assertThat(result.getErrors().get(1)).isEqualTo("Product price must have a positive value and a currency code");
+    }
+
+    /* The redsky call as the name service makes it, the response is handed to the extractor as a stream */
+    private Object redskyCall() {
+        return restTemplate.execute(any(URI.class), any(HttpMethod.class),
+                any(RequestCallback.class), any(ResponseExtractor.class));
+    }
+
+    private void redskyReturns(String response) {
+        when(redskyCall()).thenAnswer(invocation -> {
+            ResponseExtractor<?> extractor = invocation.getArgument(3);
+            return extractor.extractData(
+                    new MockClientHttpResponse(response.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+        });
     }
 }
@@ -0,0 +1,148 @@
+package com.retail.retailAPI.services;
+
+import com.retail.retailAPI.config.AppConfig;
+import com.retail.retailAPI.exceptions.ProductNotFoundException;
+import com.retail.retailAPI.exceptions.ServerException;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.repositories.ReactivePriceRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReactiveProductServiceTest {
+
+    private ReactiveProductService productService;
+
+    private ReactivePriceRepository reactivePriceRepository;
+
+    @Before
+    public void setUp() {
+        reactivePriceRepository = mock(ReactivePriceRepository.class);
+        AppConfig appConfig = mock(AppConfig.class);
+        when(appConfig.getRestURL()).thenReturn("http://localhost/v2/pdp/tcin/{id}");
+
+        productService = new ReactiveProductService();
+        productService.reactivePriceRepository = reactivePriceRepository;
+        productService.appConfig = appConfig;
+        productService.redskyResponseParser = new RedskyResponseParser();
+        productService.meterRegistry = new SimpleMeterRegistry();
+        productService.redskyCircuitBreaker = CircuitBreaker.ofDefaults("redsky");
+        productService.redskyBulkhead = Bulkhead.ofDefaults("redsky");
+    }
+
+    private WebClient redsky(HttpStatus status, String body) {
+        return WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(status)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(body)
+                        .build()))
+                .build();
+    }
+
+    @Test
+    public void when_ProductFound_Expect_ProductRetrieved() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.just(product));
+        productService.webClient = redsky(HttpStatus.OK,
+                "{ \"product\" : { \"item\": { \"product_description\": { \"title\": \"Test Title\"}}}}");
+
+        StepVerifier.create(productService.getProduct(1))
+                .assertNext(result -> assertThat(result.getName()).isEqualTo("Test Title"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_ResponseSplitAcrossBuffers_Expect_ProductRetrieved() {
+        Product product = new Product(1, "test", new Price(4, "USD"));
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.just(product));
+        DefaultDataBufferFactory buffers = new DefaultDataBufferFactory();
+        productService.webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(Flux.just("{ \"product\" : { \"price\": [1, {\"a\": 2}], \"item\": { \"product_desc",
+                                "ription\": { \"title\": \"Test ", "Title\"}}}, \"other\": {}}")
+                                .map(chunk -> buffers.wrap(chunk.getBytes(StandardCharsets.UTF_8)))
+                                .cast(DataBuffer.class))
+                        .build()))
+                .build();
+
+        StepVerifier.create(productService.getProduct(1))
+                .assertNext(result -> assertThat(result.getName()).isEqualTo("Test Title"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_ProductNotFound_Expect_GetSignalsNotFound() {
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.empty());
+        productService.webClient = redsky(HttpStatus.OK, "{}");
+
+        StepVerifier.create(productService.getProduct(4))
+                .expectError(ProductNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    public void when_ExternalApiError_Expect_GetSignalsServerError() {
+        Product product = new Product(1, null, new Price(4, "USD"));
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.just(product));
+        productService.webClient = redsky(HttpStatus.INTERNAL_SERVER_ERROR, "{}");
+
+        StepVerifier.create(productService.getProduct(1))
+                .expectError(ServerException.class)
+                .verify();
+    }
+
+    @Test
+    public void when_ExternalApiError_Expect_LastKnownNameServedAsStale() {
+        Product product = new Product(1, "Stored Title", new Price(4, "USD"));
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.just(product));
+        productService.webClient = redsky(HttpStatus.INTERNAL_SERVER_ERROR, "{}");
+
+        StepVerifier.create(productService.getProduct(1))
+                .assertNext(result -> {
+                    assertThat(result.getName()).isEqualTo("Stored Title");
+                    assertThat(result.isStale()).isTrue();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void when_CircuitOpen_Expect_RedskyNotCalled() {
+        Product product = new Product(1, "Stored Title", new Price(4, "USD"));
+        when(reactivePriceRepository.findPrice(anyInt())).thenReturn(Mono.just(product));
+        AtomicInteger calls = new AtomicInteger();
+        productService.webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                })
+                .build();
+        productService.redskyCircuitBreaker.transitionToOpenState();
+
+        StepVerifier.create(productService.getProduct(1))
+                .assertNext(result -> assertThat(result.isStale()).isTrue())
+                .verifyComplete();
+        assertThat(calls.get()).isZero();
+    }
+}
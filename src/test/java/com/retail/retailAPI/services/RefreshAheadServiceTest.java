@@ -0,0 +1,154 @@
+package com.retail.retailAPI.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.retail.retailAPI.cache.PriceSnapshot;
+import com.retail.retailAPI.cache.ProductCaches;
+import com.retail.retailAPI.cache.TwoTierCache;
+import com.retail.retailAPI.models.Price;
+import com.retail.retailAPI.models.Product;
+import com.retail.retailAPI.repositories.PriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RefreshAheadServiceTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    private RefreshAheadService refreshAheadService;
+
+    private ProductCaches productCaches;
+
+    private PriceRepository priceRepository;
+
+    private ProductNameService productNameService;
+
+    private ExecutorService nameRefresher;
+
+    @Before
+    public void setUp() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(cache(ProductCaches.PRICES, 10), cache(ProductCaches.NAMES, 60),
+                cache(ProductCaches.PAYLOADS, 10)));
+        cacheManager.afterPropertiesSet();
+
+        productCaches = new ProductCaches();
+        ReflectionTestUtils.setField(productCaches, "cacheManager", cacheManager);
+        priceRepository = mock(PriceRepository.class);
+        productNameService = mock(ProductNameService.class);
+
+        refreshAheadService = new RefreshAheadService();
+        refreshAheadService.priceRepository = priceRepository;
+        refreshAheadService.productNameService = productNameService;
+        refreshAheadService.productCaches = productCaches;
+        refreshAheadService.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(refreshAheadService, "size", 100);
+        ReflectionTestUtils.setField(refreshAheadService, "threshold", 0.8);
+        nameRefresher = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(refreshAheadService, "nameRefresher", nameRefresher);
+    }
+
+    @After
+    public void tearDown() {
+        nameRefresher.shutdownNow();
+    }
+
+    private TwoTierCache cache(String name, int ttlMinutes) {
+        return new TwoTierCache(new CaffeineCache(name, Caffeine.newBuilder()
+                .maximumSize(100)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .ticker(ticker::get)
+                .build()), null);
+    }
+
+    @Test
+    public void when_HotPriceCloseToExpiry_Expect_Reloaded() {
+        productCaches.putPrice(1, new Price(4, "USD"));
+        productCaches.putName(1, "test");
+        when(priceRepository.findPrices(any())).thenReturn(List.of(new Product(1, "test", new Price(5, "USD"))));
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(9));
+        refreshAheadService.refresh();
+
+        assertThat(((Price) productCaches.getPrice(1).get()).getValue()).isEqualTo(5);
+        verify(productNameService, never()).refreshName(anyInt());
+    }
+
+    @Test
+    public void when_PriceUpdatedWhileReloading_Expect_LaterVersionKept() {
+        productCaches.putPrice(1, new Price(6, "USD", 2));
+        productCaches.putName(1, "test");
+        when(priceRepository.findPrices(any())).thenReturn(List.of(new Product(1, "test", new Price(5, "USD", 1))));
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(9));
+        refreshAheadService.refresh();
+
+        Price cached = (Price) productCaches.getPrice(1).get();
+        assertThat(cached.getValue()).isEqualTo(6);
+        assertThat(cached.getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void when_HotNamesCloseToExpiry_Expect_ReloadedConcurrently() {
+        productCaches.putName(1, "first");
+        productCaches.putName(2, "second");
+
+        /* Each refresh waits for the other, so they only complete when they run at the same time */
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(productNameService.refreshName(anyInt())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return "refreshed";
+        });
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(55));
+        refreshAheadService.refresh();
+
+        verify(productNameService, times(2)).refreshName(anyInt());
+        assertThat(refreshAheadService.meterRegistry.counter("cache.refresh-ahead", "cache", ProductCaches.NAMES)
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    public void when_PriceSnapshotEnabled_Expect_PricesNotReloadedAndNamesTracked() {
+        ReflectionTestUtils.setField(productCaches, "priceSnapshot", mock(PriceSnapshot.class));
+        productCaches.putName(1, "test");
+        productCaches.getName(1);
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(9));
+        refreshAheadService.refresh();
+
+        verify(priceRepository, never()).findPrices(any());
+        assertThat(productCaches.hottestProducts(10)).containsExactly(1);
+    }
+
+    @Test
+    public void when_HotPriceFresh_Expect_NotReloaded() {
+        productCaches.putPrice(1, new Price(4, "USD"));
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        refreshAheadService.refresh();
+
+        verify(priceRepository, never()).findPrices(any());
+    }
+}